@@ -0,0 +1,49 @@
+package io.mindspice.jxch.transact.benchmarks;
+
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
+import io.mindspice.jxch.transact.util.G2Element;
+import io.mindspice.jxch.transact.util.SpendBundleAggregator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/*
+ Cost of attaching a fee bundle in process, what every fee attach and fee bump does in place of an aggregate_spends
+ round trip to the wallet. Each bundle's signature is decoded, summed and the result re-encoded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+
+    @Param({"2", "8"})
+    public int bundles;
+
+    private List<SpendBundle> spendBundles;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        spendBundles = new ArrayList<>(bundles);
+        G2Element signature = G2Element.GENERATOR;
+        for (int i = 0; i < bundles; ++i) {
+            // Distinct points on the curve stand in for real signatures, aggregation does not check them
+            signature = signature.add(signature).add(G2Element.GENERATOR);
+            List<Coin> coins = List.of(Fixtures.coin(Fixtures.hash(random), Fixtures.hash(random), 1_000_000));
+            spendBundles.add(Fixtures.spendBundle(signature.toHex(), coins, "0x80"));
+        }
+    }
+
+    @Benchmark
+    public SpendBundle aggregate() {
+        return SpendBundleAggregator.aggregate(spendBundles);
+    }
+}
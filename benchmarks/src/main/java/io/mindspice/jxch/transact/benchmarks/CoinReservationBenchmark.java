@@ -0,0 +1,90 @@
+package io.mindspice.jxch.transact.benchmarks;
+
+import io.mindspice.jxch.rpc.http.WalletAPI;
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.transact.service.CoinReservationManager;
+import io.mindspice.jxch.transact.service.WalletCoinIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/*
+ Contention on the shared coin reservations as jobs pick coins, at 1 to 64 threads. Each operation is what
+ TJob.selectCoin does for getFeeCoin: walk the wallet index up from a target amount and reserve the first coin not
+ held by another job, followed by releasing it as a finished job would. The small wallet has fewer coins than
+ threads at 64, so most reservation attempts there collide.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoinReservationBenchmark {
+    private static final int WALLET_ID = 1;
+    private static final long LEASE_MS = 600_000;
+
+    @Param({"32", "10000"})
+    public int walletSize;
+
+    private WalletCoinIndex index;
+    private CoinReservationManager reservations;
+    private long maxAmount;
+
+    @State(Scope.Thread)
+    public static class Job {
+        final String jobId = UUID.randomUUID().toString();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // The index is keyed by api instance, a fresh one per trial keeps trials independent. It is never called
+        index = WalletCoinIndex.forWallet(new WalletAPI(null), WALLET_ID);
+        reservations = CoinReservationManager.getShared();
+        Random random = new Random(42);
+        for (int i = 0; i < walletSize; ++i) {
+            long amount = 1_000 + random.nextInt(1_000_000);
+            maxAmount = Math.max(maxAmount, amount);
+            index.add(Fixtures.coin(Fixtures.hash(random), Fixtures.hash(random), amount));
+        }
+    }
+
+    private Coin reserveAndRelease(Job job) {
+        long target = ThreadLocalRandom.current().nextLong(maxAmount / 2);
+        for (Coin coin : index.ascendingFrom(target)) {
+            if (reservations.reserve(WALLET_ID, coin, job.jobId, LEASE_MS)) {
+                reservations.release(WALLET_ID, coin, job.jobId);
+                return coin;
+            }
+        }
+        return null; // Every covering coin is held by another thread
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Coin threads01(Job job) {
+        return reserveAndRelease(job);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Coin threads04(Job job) {
+        return reserveAndRelease(job);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Coin threads16(Job job) {
+        return reserveAndRelease(job);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Coin threads64(Job job) {
+        return reserveAndRelease(job);
+    }
+}
@@ -0,0 +1,94 @@
+package io.mindspice.jxch.transact.benchmarks;
+
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.transact.service.CoinSelectors;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+
+/*
+ Coin selection over dust heavy wallets, where most coins are a few hundred mojos and a handful are large.
+ The JMH benchmarks time each built in selector, running the class directly prints the inputs and change each
+ selector produces for the same wallets and targets.
+
+ Usage: java -cp benchmarks.jar io.mindspice.jxch.transact.benchmarks.CoinSelectionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoinSelectionBenchmark {
+    private static final int MAX_INPUTS = 100;
+    private static final long BUDGET_MS = 50;
+
+    @Param({"10000", "50000"})
+    public int walletSize;
+
+    @Param({"LARGEST_FIRST", "BRANCH_AND_BOUND", "MINIMAL_INPUTS", "FRAGMENTATION_AWARE"})
+    public CoinSelectors selector;
+
+    private List<Coin> candidates;
+    private long[] targets;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        candidates = dustWallet(walletSize, random);
+        targets = targets(64, random);
+    }
+
+    @Benchmark
+    public List<Coin> select() {
+        long target = targets[next++ & (targets.length - 1)];
+        return selector.select(candidates, target, MAX_INPUTS, BUDGET_MS);
+    }
+
+    // 95% dust between 1 and 1000 mojos, the rest between 1k and 10m, largest first as WalletCoinIndex provides
+    static List<Coin> dustWallet(int size, Random random) {
+        List<Coin> coins = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            long amount = random.nextInt(100) < 95
+                    ? 1 + random.nextInt(1000)
+                    : 1_000 + random.nextInt(10_000_000);
+            coins.add(Fixtures.coin(Fixtures.hash(random), Fixtures.hash(random), amount));
+        }
+        coins.sort(Comparator.comparingLong(Coin::amount).reversed());
+        return coins;
+    }
+
+    static long[] targets(int count, Random random) {
+        long[] targets = new long[count];
+        for (int i = 0; i < count; ++i) {
+            targets[i] = 10_000 + random.nextInt(5_000_000);
+        }
+        return targets;
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("%-20s %8s %12s %14s %10s%n", "Selector", "Wallet", "AvgInputs", "AvgChange", "ExactHits");
+        for (int size : new int[]{10_000, 50_000}) {
+            Random random = new Random(42);
+            List<Coin> wallet = dustWallet(size, random);
+            long[] targets = targets(64, random);
+            for (CoinSelectors selector : CoinSelectors.values()) {
+                long inputs = 0;
+                long change = 0;
+                int exact = 0;
+                for (long target : targets) {
+                    List<Coin> selected = selector.select(wallet, target, MAX_INPUTS, BUDGET_MS);
+                    long sum = selected.stream().mapToLong(Coin::amount).sum();
+                    inputs += selected.size();
+                    change += sum - target;
+                    if (sum == target) { exact++; }
+                }
+                System.out.printf("%-20s %8d %12.1f %14.1f %10d%n", selector, size,
+                        (double) inputs / targets.length, (double) change / targets.length, exact);
+            }
+        }
+    }
+}
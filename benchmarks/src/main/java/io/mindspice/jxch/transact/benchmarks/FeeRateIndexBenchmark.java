@@ -0,0 +1,92 @@
+package io.mindspice.jxch.transact.benchmarks;
+
+import io.mindspice.jxch.rpc.schemas.object.MempoolItem;
+import io.mindspice.jxch.transact.service.FeeRateIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+
+/*
+ Compares the sort-and-walk fee per cost calculation TJob.getFeePerCostNeeded used to run on every call against
+ querying and incrementally updating the FeeRateIndex.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeeRateIndexBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int mempoolSize;
+
+    private Collection<MempoolItem> items;
+    private Map<String, MempoolItem> mempool;
+    private Map<String, MempoolItem> churned;
+    private FeeRateIndex index;
+    private long bundleCost;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        mempool = Fixtures.mempool(mempoolSize, random);
+        items = mempool.values();
+        index = new FeeRateIndex();
+        index.applyDiff(Map.of(), mempool);
+        bundleCost = items.stream().mapToLong(MempoolItem::cost).sum() / 10;
+
+        // One refresh worth of churn, 1% of the items confirmed and replaced by new ones
+        churned = new HashMap<>(mempool);
+        Iterator<String> keys = churned.keySet().iterator();
+        for (int i = 0; i < mempoolSize / 100 && keys.hasNext(); ++i) {
+            keys.next();
+            keys.remove();
+        }
+        for (int i = 0; i < mempoolSize / 100; ++i) {
+            MempoolItem item = Fixtures.randomMempoolItem(random);
+            churned.put(item.spendBundleName(), item);
+        }
+    }
+
+    @Benchmark
+    public long legacySortAndWalk() {
+        long totalMemCost = items.stream()
+                .mapToLong(MempoolItem::cost)
+                .sum();
+
+        long feeNeeded = 0;
+        if (totalMemCost > 0) {
+            var sortedMempool = items.stream()
+                    .filter(i -> i.fee() > 0)
+                    .sorted(Comparator.comparing(MempoolItem::fee))
+                    .toList();
+
+            var memSum = 0L;
+            for (MempoolItem item : sortedMempool) {
+                if (memSum < (bundleCost * 1.05)) {
+                    memSum += item.cost();
+                    if (item.cost() > 0) {
+                        feeNeeded = item.fee() / item.cost();
+                    }
+                }
+            }
+        }
+        return feeNeeded;
+    }
+
+    @Benchmark
+    public long indexQuery() {
+        return index.feePerCostToDisplace((long) Math.ceil(bundleCost * 1.05));
+    }
+
+    // Cost of keeping the index current across one refresh and back
+    @Benchmark
+    public long indexApplyRefreshDiff() {
+        index.applyDiff(mempool, churned);
+        index.applyDiff(churned, mempool);
+        return index.totalCost();
+    }
+}
@@ -0,0 +1,79 @@
+package io.mindspice.jxch.transact.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.rpc.schemas.object.CoinRecord;
+import io.mindspice.jxch.rpc.schemas.object.MempoolItem;
+import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
+
+import java.util.*;
+
+
+// Synthetic RPC objects, built through their JSON form so they match however the RPC library constructs them
+public class Fixtures {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public static MempoolItem mempoolItem(String spendBundleName, long cost, long fee) {
+        return MAPPER.convertValue(Map.of(
+                "spend_bundle_name", spendBundleName,
+                "cost", cost,
+                "fee", fee
+        ), MempoolItem.class);
+    }
+
+    public static Coin coin(String parentCoinInfo, String puzzleHash, long amount) {
+        return MAPPER.convertValue(Map.of(
+                "parent_coin_info", parentCoinInfo,
+                "puzzle_hash", puzzleHash,
+                "amount", amount
+        ), Coin.class);
+    }
+
+    public static CoinRecord coinRecord(Coin coin, int confirmedHeight, int spentHeight, long timestamp) {
+        Map<String, Object> record = new HashMap<>();
+        record.put("coin", coin);
+        record.put("coinbase", false);
+        record.put("confirmed_block_index", confirmedHeight);
+        record.put("spent", spentHeight > 0);
+        record.put("spent_block_index", Math.max(spentHeight, 0));
+        record.put("timestamp", timestamp);
+        return convert(record, CoinRecord.class);
+    }
+
+    // Bundle spending the coins with a placeholder puzzle and the given solution
+    public static SpendBundle spendBundle(String aggregatedSignature, List<Coin> coins, String solution) {
+        List<Map<String, Object>> coinSpends = new ArrayList<>(coins.size());
+        for (Coin coin : coins) {
+            coinSpends.add(Map.of("coin", coin, "puzzle_reveal", "0x01", "solution", solution));
+        }
+        return convert(Map.of("aggregated_signature", aggregatedSignature, "coin_spends", coinSpends), SpendBundle.class);
+    }
+
+    public static <T> T convert(Object json, Class<T> type) {
+        return MAPPER.convertValue(json, type);
+    }
+
+    public static String hash(Random random) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return "0x" + HexFormat.of().formatHex(bytes);
+    }
+
+    // Mempool with a realistic spread of costs and fee per cost values, a quarter of the items pay no fee
+    public static Map<String, MempoolItem> mempool(int size, Random random) {
+        Map<String, MempoolItem> mempool = new HashMap<>(size * 2);
+        for (int i = 0; i < size; ++i) {
+            MempoolItem item = randomMempoolItem(random);
+            mempool.put(item.spendBundleName(), item);
+        }
+        return mempool;
+    }
+
+    public static MempoolItem randomMempoolItem(Random random) {
+        long cost = 5_000_000L + random.nextInt(200_000_000);
+        long feePerCost = random.nextInt(4) == 0 ? 0 : 1 + (long) Math.abs(random.nextGaussian() * 30);
+        return mempoolItem(hash(random), cost, cost * feePerCost);
+    }
+}
@@ -0,0 +1,116 @@
+package io.mindspice.jxch.transact.benchmarks;
+
+import io.mindspice.jxch.transact.journal.ItemJournal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+
+/*
+ Measures how long a service takes to recover from its journal on restart, for journals of millions of entries.
+ Two shapes are written then re-opened, timing replay and the compaction that follows:
+  - backlog: every item submitted and still queued, the worst case for the amount of live state
+  - churn: items batched into jobs of 50, each job pushes and nearly all complete. One item left queued from
+    the start keeps every segment alive, so all records are replayed
+
+ Usage: java -cp benchmarks.jar io.mindspice.jxch.transact.benchmarks.JournalRecovery [entries ...] [dir]
+ */
+public class JournalRecovery {
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final int JOB_SIZE = 50;
+
+    public static void main(String[] args) throws IOException {
+        List<Long> sizes = new ArrayList<>();
+        Path base = null;
+        for (String arg : args) {
+            if (arg.chars().allMatch(Character::isDigit)) { sizes.add(Long.parseLong(arg)); } else { base = Path.of(arg); }
+        }
+        if (sizes.isEmpty()) { sizes = List.of(100_000L, 1_000_000L, 3_000_000L); }
+        if (base == null) { base = Files.createTempDirectory("journal-recovery"); }
+
+        System.out.printf("%-8s %10s %12s %10s %11s %10s %9s %9s%n",
+                "Shape", "Entries", "Records", "Size(MB)", "Replay(ms)", "Open(ms)", "Queued", "Resumed");
+        for (long entries : sizes) {
+            for (String shape : List.of("backlog", "churn")) {
+                Path dir = base.resolve(shape + "-" + entries);
+                deleteDir(dir);
+                if (shape.equals("backlog")) { writeBacklog(dir, entries); } else { writeChurn(dir, entries); }
+
+                long start = System.nanoTime();
+                try (ItemJournal journal = ItemJournal.open(dir, SEGMENT_BYTES)) {
+                    long openMs = (System.nanoTime() - start) / 1_000_000;
+                    ItemJournal.Recovery recovery = journal.recovery();
+                    System.out.printf("%-8s %10d %12d %10d %11d %10d %9d %9d%n", shape, entries,
+                            recovery.records(), recovery.bytes() / (1024 * 1024), recovery.replayMillis(), openMs,
+                            recovery.pending().size(), recovery.inFlight().size());
+                }
+                deleteDir(dir);
+            }
+        }
+    }
+
+    // Entries are all submits, none batched
+    private static void writeBacklog(Path dir, long entries) throws IOException {
+        Random random = new Random(42);
+        try (ItemJournal journal = ItemJournal.open(dir, SEGMENT_BYTES)) {
+            for (long i = 0; i < entries; ++i) {
+                journal.submit("item-" + i, 1, Long.MAX_VALUE, item(random, i));
+            }
+        }
+    }
+
+    // Entries are split between submits and the batch, push and complete records of their jobs
+    private static void writeChurn(Path dir, long entries) throws IOException {
+        Random random = new Random(42);
+        byte[] checkpoint = new byte[2048];
+        random.nextBytes(checkpoint);
+        try (ItemJournal journal = ItemJournal.open(dir, SEGMENT_BYTES)) {
+            journal.submit("stuck", 1, Long.MAX_VALUE, item(random, -1));
+            long written = 1;
+            long job = 0;
+            while (written < entries) {
+                List<String> keys = new ArrayList<>(JOB_SIZE);
+                for (int i = 0; i < JOB_SIZE; ++i) {
+                    String key = "item-" + (job * JOB_SIZE + i);
+                    journal.submit(key, 1, Long.MAX_VALUE, item(random, job * JOB_SIZE + i));
+                    keys.add(key);
+                }
+                String jobId = "job-" + job;
+                journal.batch(jobId, keys);
+                journal.push(jobId, checkpoint);
+                written += JOB_SIZE + 2;
+                // 1 in 100 jobs is left in flight
+                if (job % 100 != 0) {
+                    journal.complete(jobId);
+                    written++;
+                }
+                job++;
+            }
+        }
+    }
+
+    // Roughly the size of a serialized MintItem with a small metadata block
+    private static byte[] item(Random random, long i) {
+        return ("{\"targetAddress\":\"xch1" + Fixtures.hash(random).substring(2, 60) + "\"," +
+                "\"metaData\":{\"uris\":[\"https://example.com/nft/" + i + ".png\"],\"hash\":\"" +
+                Fixtures.hash(random) + "\",\"meta_uris\":[\"https://example.com/nft/" + i + ".json\"]," +
+                "\"meta_hash\":\"" + Fixtures.hash(random) + "\",\"edition_number\":1,\"edition_total\":1}," +
+                "\"uuid\":\"" + i + "\",\"nftId\":null}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void deleteDir(Path dir) throws IOException {
+        if (!Files.exists(dir)) { return; }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
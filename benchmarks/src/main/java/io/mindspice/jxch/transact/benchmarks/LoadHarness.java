@@ -0,0 +1,391 @@
+package io.mindspice.jxch.transact.benchmarks;
+
+import io.mindspice.jxch.rpc.schemas.wallet.Addition;
+import io.mindspice.jxch.rpc.schemas.wallet.nft.MetaData;
+import io.mindspice.jxch.transact.benchmarks.sim.*;
+import io.mindspice.jxch.transact.logging.TLogLevel;
+import io.mindspice.jxch.transact.logging.TLogger;
+import io.mindspice.jxch.transact.metrics.Log2Histogram;
+import io.mindspice.jxch.transact.metrics.TMetrics;
+import io.mindspice.jxch.transact.service.FeeStrategies;
+import io.mindspice.jxch.transact.service.TService;
+import io.mindspice.jxch.transact.service.mint.MintItem;
+import io.mindspice.jxch.transact.service.mint.MintService;
+import io.mindspice.jxch.transact.service.transaction.TransactionItem;
+import io.mindspice.jxch.transact.service.transaction.TransactionService;
+import io.mindspice.jxch.transact.settings.JobConfig;
+import io.mindspice.jxch.transact.util.TClock;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/*
+ Runs item streams through real MintService/TransactionService subclasses against the simulated node and wallet,
+ on virtual time, and reports what a submitter sees: submit to onFinish latency, items per block, fee per item,
+ plus the retries and fee bumps it took and the JVM's thread and heap use while running.
+ Failed items are re-submitted as a service owner would, their latency runs from the first submit.
+ Scenarios:
+  - steady: Poisson arrivals at rate items/hour on a lightly loaded chain
+  - airdrop: bursts of burst items every burstEveryMin minutes on the same chain
+  - congested: steady arrivals while other users demand 1.5x the block space, inclusion becomes a fee auction
+
+ Usage: java -cp benchmarks.jar io.mindspice.jxch.transact.benchmarks.LoadHarness [key=value ...]
+  service=mint|tx scenario=steady|airdrop|congested|all hours=2 drainHours=6 rate=3000 burst=3000 burstEveryMin=60
+  jobSize=50 queueMaxWaitSec=120 feeIncInterval=10 maxConcurrentJobs=4 maxFeePerCost=100 maxConfirmWait=-1 seed=1
+  feeStrategy=LEGACY|MEMPOOL_PERCENTILE|EXPONENTIAL_RBF|DEADLINE_AWARE feePercentile=0.9 feeBumpFactor=1.5
+  feeReplaceWaitSec=60 feeDeadlineSec=1800
+ */
+public class LoadHarness {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static final int FUND_WALLET = 1;
+    private static final int FEE_WALLET = 2;
+    private static final int MINT_WALLET = 3;
+    private static final long SAMPLE_INTERVAL_MS = 60_000;
+
+
+    private enum Scenario {
+        STEADY(0.3, false),
+        AIRDROP(0.3, true),
+        CONGESTED(1.5, false);
+
+        final double backgroundLoad;
+        final boolean bursts;
+
+        Scenario(double backgroundLoad, boolean bursts) {
+            this.backgroundLoad = backgroundLoad;
+            this.bursts = bursts;
+        }
+    }
+
+    private record Settings(Map<String, String> args) {
+        String get(String key, String def) {
+            return args.getOrDefault(key, def);
+        }
+
+        int getInt(String key, int def) {
+            return Integer.parseInt(get(key, String.valueOf(def)));
+        }
+
+        double getDouble(String key, double def) {
+            return Double.parseDouble(get(key, String.valueOf(def)));
+        }
+    }
+
+    private record Result(
+            Scenario scenario,
+            long submitted,
+            long finished,
+            long failures,
+            long unresolved,
+            Log2Histogram.Snapshot latencySec,
+            SimChain.StatsSnapshot chain,
+            TMetrics.Snapshot metrics,
+            int peakThreads,
+            long peakHeapMb,
+            long wallMs
+    ) { }
+
+    // Service under test, its items and how it is wired to the simulated wallets
+    private interface Target<T> {
+        TService<T> create(VirtualScheduler scheduler, JobConfig config, TLogger logger, SimFullNodeAPI node,
+                SimWalletAPI wallet, Run<T> run);
+
+        T newItem(Random random);
+
+        String uuid(T item);
+
+        // Funds the wallets for up to the number of jobs
+        void fund(SimWalletAPI wallet, int jobs, int jobSize);
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> parsed = new HashMap<>();
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            if (kv.length != 2) { throw new IllegalArgumentException("Expected key=value, got: " + arg); }
+            parsed.put(kv[0], kv[1]);
+        }
+        Settings settings = new Settings(parsed);
+
+        String scenarioArg = settings.get("scenario", "all").toUpperCase();
+        List<Scenario> scenarios = scenarioArg.equals("ALL")
+                ? List.of(Scenario.values())
+                : List.of(Scenario.valueOf(scenarioArg));
+        boolean mint = !settings.get("service", "mint").equals("tx");
+
+        System.out.printf("Service: %s | jobSize: %d | queueMaxWaitSec: %d | feeIncInterval: %d | maxConcurrentJobs: %d" +
+                        " | prepareAhead: %d | feeStrategy: %s | hours: %s | seed: %s%n",
+                mint ? "MintService" : "TransactionService", settings.getInt("jobSize", 50),
+                settings.getInt("queueMaxWaitSec", 120), settings.getInt("feeIncInterval", 10),
+                settings.getInt("maxConcurrentJobs", 4), settings.getInt("prepareAhead", 0),
+                settings.get("feeStrategy", "LEGACY"), settings.get("hours", "2"), settings.get("seed", "1"));
+        System.out.printf("%-10s %9s %9s %8s %6s %9s %9s %12s %24s %16s %8s %8s %8s %8s %9s %8s%n",
+                "Scenario", "Submitted", "Finished", "Failures", "Left", "Items/h", "Items/Blk", "Fee/Item",
+                "Latency p50/p90/p99(s)", "Confirm p50/p90", "Retries", "FeeBumps", "RPCs", "Threads", "Heap(MB)", "Wall(ms)");
+        for (Scenario scenario : scenarios) {
+            Result r = mint ? new Run<>(scenario, settings, new MintTarget()).execute()
+                    : new Run<>(scenario, settings, new TransactionTarget()).execute();
+            System.out.printf("%-10s %9d %9d %8d %6d %9.0f %9.1f %12.0f %24s %16s %8d %8d %8d %8d %9d %8d%n",
+                    r.scenario, r.submitted, r.finished, r.failures, r.unresolved,
+                    r.chain.itemsPerHour(), r.chain.itemsPerBlock(), r.chain.feePerItem(),
+                    String.format("%.0f/%.0f/%.0f", r.latencySec.p50(), r.latencySec.p90(), r.latencySec.p99()),
+                    String.format("%.0f/%.0f", r.chain.timeToConfirmSec().p50(), r.chain.timeToConfirmSec().p90()),
+                    r.metrics.counters().get("RETRIES"), r.metrics.counters().get("FEE_BUMPS"), r.chain.rpcCalls(),
+                    r.peakThreads, r.peakHeapMb, r.wallMs);
+            if (!r.chain.pushErrors().isEmpty()) { System.out.println("           Push errors: " + r.chain.pushErrors()); }
+        }
+    }
+
+    private static final class Run<T> {
+        private final Scenario scenario;
+        private final Settings settings;
+        private final Target<T> target;
+        private final Random random;
+        private final Map<String, Long> submittedAt = new HashMap<>();
+        private final Log2Histogram latency = new Log2Histogram();
+        private final AtomicLong finished = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private TService<T> service;
+        private long submitted;
+        private boolean streamDone;
+        private int peakThreads;
+        private long peakHeap;
+
+        Run(Scenario scenario, Settings settings, Target<T> target) {
+            this.scenario = scenario;
+            this.settings = settings;
+            this.target = target;
+            this.random = new Random(settings.getInt("seed", 1));
+        }
+
+        Result execute() {
+            long wallStart = System.nanoTime();
+            SimConfig simConfig = new SimConfig();
+            simConfig.seed = settings.getInt("seed", 1);
+            simConfig.backgroundLoad = settings.getDouble("backgroundLoad", scenario.backgroundLoad);
+            VirtualClock clock = new VirtualClock(simConfig.startMillis).install();
+            VirtualScheduler scheduler = new VirtualScheduler(clock);
+            try {
+                SimChain chain = new SimChain(simConfig, clock);
+                SimFullNodeAPI node = new SimFullNodeAPI(chain);
+                SimWalletAPI wallet = new SimWalletAPI(chain);
+
+                long streamMs = (long) (settings.getDouble("hours", 2) * 3_600_000);
+                JobConfig config = jobConfig(wallet);
+                int expectedJobs = (int) (expectedItems(streamMs) / config.jobSize) + 1;
+                target.fund(wallet, expectedJobs * 3 + 20, config.jobSize);
+
+                service = target.create(scheduler, config, quietLogger(), node, wallet, this);
+                service.start();
+                scheduleStream(scheduler, streamMs);
+                scheduler.scheduleAtFixedRate(this::sample, 0, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+                long maxMs = streamMs + (long) (settings.getDouble("drainHours", 6) * 3_600_000);
+                scheduler.runUntil(() -> streamDone && submittedAt.isEmpty(), maxMs);
+                service.stop();
+                sample();
+
+                return new Result(scenario, submitted, finished.get(), failures.get(), submittedAt.size(),
+                        latency.snapshot(1000), chain.stats(), service.metrics().snapshot(),
+                        peakThreads, peakHeap / (1024 * 1024), (System.nanoTime() - wallStart) / 1_000_000);
+            } finally {
+                scheduler.shutdownNow();
+                TClock.reset();
+            }
+        }
+
+        private JobConfig jobConfig(SimWalletAPI wallet) {
+            JobConfig config = new JobConfig();
+            config.fundWalletId = FUND_WALLET;
+            config.feeWalletId = FEE_WALLET;
+            config.mintWalletId = MINT_WALLET;
+            config.changeTarget = wallet.newAddress(FUND_WALLET);
+            config.nonBlockingEngine = true;
+            config.queueCheckInterval = 10;
+            config.jobSize = settings.getInt("jobSize", 50);
+            config.queueMaxWaitSec = settings.getInt("queueMaxWaitSec", 120);
+            config.feeIncInterval = settings.getInt("feeIncInterval", 10);
+            config.feeLadderSteps = settings.getInt("feeLadderSteps", 0);
+            config.feeStrategy = FeeStrategies.valueOf(settings.get("feeStrategy", "LEGACY").toUpperCase());
+            config.feePercentile = settings.getDouble("feePercentile", 0.9);
+            config.feeBumpFactor = settings.getDouble("feeBumpFactor", 1.5);
+            config.feeReplaceWaitSec = settings.getInt("feeReplaceWaitSec", 60);
+            config.feeDeadlineSec = settings.getInt("feeDeadlineSec", 1800);
+            config.maxConcurrentJobs = settings.getInt("maxConcurrentJobs", 4);
+            config.prepareAhead = settings.getInt("prepareAhead", 0);
+            config.maxFeePerCost = settings.getInt("maxFeePerCost", 100);
+            config.maxConfirmWait = settings.getInt("maxConfirmWait", -1);
+            config.localAggregation = Boolean.parseBoolean(settings.get("localAggregation", "true"));
+            config.verifyAggregation = Boolean.parseBoolean(settings.get("verifyAggregation", "false"));
+            config.retryWaitInterval = settings.getInt("retryWaitInterval", 45000);
+            return config;
+        }
+
+        private double expectedItems(long streamMs) {
+            if (scenario.bursts) {
+                long every = settings.getInt("burstEveryMin", 60) * 60_000L;
+                return (streamMs / every + 1) * (double) settings.getInt("burst", 3000);
+            }
+            return settings.getDouble("rate", 3000) * streamMs / 3_600_000 * 1.2;
+        }
+
+        // Arrivals are scheduled one ahead on the virtual clock until the stream ends
+        private void scheduleStream(VirtualScheduler scheduler, long streamMs) {
+            long end = TClock.millis() + streamMs;
+            if (scenario.bursts) {
+                int burst = settings.getInt("burst", 3000);
+                long every = settings.getInt("burstEveryMin", 60) * 60_000L;
+                scheduler.scheduleAtFixedRate(() -> {
+                    if (TClock.millis() >= end) {
+                        streamDone = true;
+                        return;
+                    }
+                    List<T> items = new ArrayList<>(burst);
+                    for (int i = 0; i < burst; ++i) { items.add(target.newItem(random)); }
+                    submit(items);
+                }, 0, every, TimeUnit.MILLISECONDS);
+            } else {
+                double meanGapMs = 3_600_000 / settings.getDouble("rate", 3000);
+                scheduleArrival(scheduler, end, meanGapMs);
+            }
+        }
+
+        private void scheduleArrival(VirtualScheduler scheduler, long end, double meanGapMs) {
+            long gap = (long) (-meanGapMs * Math.log(1 - random.nextDouble()));
+            scheduler.schedule(() -> {
+                if (TClock.millis() >= end) {
+                    streamDone = true;
+                    return;
+                }
+                submit(List.of(target.newItem(random)));
+                scheduleArrival(scheduler, end, meanGapMs);
+            }, gap, TimeUnit.MILLISECONDS);
+        }
+
+        private void submit(List<T> items) {
+            long now = TClock.millis();
+            items.forEach(item -> submittedAt.put(target.uuid(item), now));
+            submitted += items.size();
+            service.submit(items);
+        }
+
+        void onFinish(List<T> items) {
+            long now = TClock.millis();
+            for (T item : items) {
+                Long at = submittedAt.remove(target.uuid(item));
+                if (at != null) { latency.record(now - at); }
+            }
+            finished.addAndGet(items.size());
+        }
+
+        // Failed items go back in the queue, keeping their first submit time
+        void onFail(List<T> items) {
+            failures.addAndGet(items.size());
+            service.submit(items);
+        }
+
+        private void sample() {
+            peakThreads = Math.max(peakThreads, THREADS.getThreadCount());
+            peakHeap = Math.max(peakHeap, MEMORY.getHeapMemoryUsage().getUsed());
+        }
+    }
+
+    private static final class MintTarget implements Target<MintItem> {
+
+        @Override
+        public TService<MintItem> create(VirtualScheduler scheduler, JobConfig config, TLogger logger,
+                SimFullNodeAPI node, SimWalletAPI wallet, Run<MintItem> run) {
+            return new MintService(scheduler, config, logger, node, wallet) {
+                @Override
+                protected void onFail(List<MintItem> mintItems) {
+                    run.onFail(mintItems);
+                }
+
+                @Override
+                protected void onFinish(List<MintItem> mintItemsWithIds) {
+                    run.onFinish(mintItemsWithIds);
+                }
+            };
+        }
+
+        @Override
+        public MintItem newItem(Random random) {
+            String hash = Fixtures.hash(random);
+            return new MintItem("xch1" + hash.substring(2, 60), Fixtures.convert(Map.of("hash", hash), MetaData.class));
+        }
+
+        @Override
+        public String uuid(MintItem item) {
+            return item.uuid();
+        }
+
+        // A funding coin and a fee coin per job, a funding coin covers the 1 mojo per NFT of a full job
+        @Override
+        public void fund(SimWalletAPI wallet, int jobs, int jobSize) {
+            wallet.fund(FUND_WALLET, jobs, jobSize * 10L);
+            wallet.fund(FEE_WALLET, jobs, 10_000_000_000_000L);
+        }
+    }
+
+    private static final class TransactionTarget implements Target<TransactionItem> {
+
+        @Override
+        public TService<TransactionItem> create(VirtualScheduler scheduler, JobConfig config, TLogger logger,
+                SimFullNodeAPI node, SimWalletAPI wallet, Run<TransactionItem> run) {
+            return new TransactionService(scheduler, config, logger, node, wallet) {
+                @Override
+                protected void onFail(List<TransactionItem> transactionItems) {
+                    run.onFail(transactionItems);
+                }
+
+                @Override
+                protected void onFinish(List<TransactionItem> transactionItems) {
+                    run.onFinish(transactionItems);
+                }
+            };
+        }
+
+        @Override
+        public TransactionItem newItem(Random random) {
+            return new TransactionItem(new Addition(Fixtures.hash(random), 1000 + random.nextInt(1_000_000)));
+        }
+
+        @Override
+        public String uuid(TransactionItem item) {
+            return item.uuid();
+        }
+
+        // Change returns to the funding wallet, so a few large coins cover the whole run
+        @Override
+        public void fund(SimWalletAPI wallet, int jobs, int jobSize) {
+            wallet.fund(FUND_WALLET, Math.max(8, jobs / 10), 1_000_000_000_000L);
+            wallet.fund(FEE_WALLET, jobs, 10_000_000_000_000L);
+        }
+    }
+
+    // Only job failures and exceptions are printed
+    private static TLogger quietLogger() {
+        return new TLogger() {
+            @Override
+            public void log(Class<?> clazz, TLogLevel level, String message) {
+                if (isEnabled(level)) { System.err.println(level + " | " + message); }
+            }
+
+            @Override
+            public void log(Class<?> clazz, TLogLevel level, String message, Exception ex) {
+                log(clazz, level, message + " | " + ex);
+            }
+
+            @Override
+            public boolean isEnabled(TLogLevel level) {
+                return level == TLogLevel.ERROR;
+            }
+        };
+    }
+}
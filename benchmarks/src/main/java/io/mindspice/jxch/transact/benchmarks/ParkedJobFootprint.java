@@ -0,0 +1,122 @@
+package io.mindspice.jxch.transact.benchmarks;
+
+import io.mindspice.jxch.transact.util.JobExecutors;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+/*
+ Measures the thread and memory footprint of N jobs parked in the sleeps TJob spends its life in, when run on
+ platform threads (what a ScheduledExecutorService needs to hold N waiting jobs) vs. virtual threads.
+
+ Usage: java -cp benchmarks.jar io.mindspice.jxch.transact.benchmarks.ParkedJobFootprint [10 100 1000 ...]
+ Virtual thread numbers are only reported when run on JDK 21+.
+ */
+public class ParkedJobFootprint {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private enum Mode { PLATFORM, VIRTUAL }
+
+
+    private record Footprint(Mode mode, int jobs, int liveThreads, long heapDeltaKb, long rssDeltaKb) { }
+
+    public static void main(String[] args) throws Exception {
+        int[] jobCounts = args.length == 0
+                ? new int[]{10, 100, 1000}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+
+        System.out.printf("%-9s %8s %13s %15s %14s%n", "Mode", "Jobs", "LiveThreads", "HeapDelta(KB)", "RssDelta(KB)");
+        for (int jobs : jobCounts) {
+            for (Mode mode : Mode.values()) {
+                Optional<Footprint> footprint = measure(mode, jobs);
+                if (footprint.isEmpty()) {
+                    System.out.printf("%-9s %8d %13s%n", mode, jobs, "unsupported (requires JDK 21+)");
+                    continue;
+                }
+                Footprint f = footprint.get();
+                System.out.printf("%-9s %8d %13d %15d %14d%n",
+                        f.mode(), f.jobs(), f.liveThreads(), f.heapDeltaKb(), f.rssDeltaKb());
+            }
+        }
+    }
+
+    private static Optional<Footprint> measure(Mode mode, int jobs) throws Exception {
+        ExecutorService executor;
+        if (mode == Mode.VIRTUAL) {
+            Optional<ExecutorService> virtual = JobExecutors.newVirtualThreadExecutor();
+            if (virtual.isEmpty()) { return Optional.empty(); }
+            executor = virtual.get();
+        } else {
+            executor = Executors.newFixedThreadPool(jobs);
+        }
+
+        settle();
+        int baseThreads = THREADS.getThreadCount();
+        long baseHeap = MEMORY.getHeapMemoryUsage().getUsed();
+        long baseRss = readRssKb();
+
+        CountDownLatch parked = new CountDownLatch(jobs);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < jobs; ++i) {
+            executor.execute(() -> parkLikeJob(parked, release));
+        }
+        parked.await();
+        settle();
+
+        Footprint footprint = new Footprint(
+                mode,
+                jobs,
+                THREADS.getThreadCount() - baseThreads,
+                (MEMORY.getHeapMemoryUsage().getUsed() - baseHeap) / 1024,
+                readRssKb() - baseRss
+        );
+
+        release.countDown();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return Optional.of(footprint);
+    }
+
+    // Mirrors TJob's waits: repeated fixed interval sleeps until the awaited condition is met
+    private static void parkLikeJob(CountDownLatch parked, CountDownLatch release) {
+        parked.countDown();
+        try {
+            while (release.getCount() != 0) {
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void settle() throws InterruptedException {
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+            Thread.sleep(200);
+        }
+    }
+
+    // Resident set size from /proc, only available on linux, returns 0 elsewhere
+    private static long readRssKb() {
+        try {
+            return Files.readAllLines(Path.of("/proc/self/status")).stream()
+                    .filter(l -> l.startsWith("VmRSS:"))
+                    .map(l -> l.replaceAll("\\D", ""))
+                    .mapToLong(Long::parseLong)
+                    .findFirst().orElse(0);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
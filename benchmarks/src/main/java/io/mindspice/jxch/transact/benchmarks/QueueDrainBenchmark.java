@@ -0,0 +1,93 @@
+package io.mindspice.jxch.transact.benchmarks;
+
+import io.mindspice.jxch.transact.service.Priority;
+import io.mindspice.jxch.transact.service.PriorityLaneQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/*
+ The queue side of MintService.run/TransactionService.run. drain fills the queue with a backlog spread over the
+ lanes, a tenth of it carrying deadlines, and drains it in jobSize batches with the same launch check run() makes.
+ The submitDrain group has four submitting threads offering to a bounded queue while one thread drains it, as
+ submits do while the service task launches jobs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueDrainBenchmark {
+    private static final int BOUNDED_CAPACITY = 10_000;
+
+    @Param({"10000", "100000"})
+    public int backlog;
+
+    @Param({"50", "500"})
+    public int jobSize;
+
+    private String[] items;
+    private Priority[] priorities;
+    private long[] deadlines;
+    private PriorityLaneQueue<String> bounded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        items = new String[backlog];
+        priorities = new Priority[backlog];
+        deadlines = new long[backlog];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < backlog; ++i) {
+            items[i] = "item-" + i;
+            priorities[i] = Priority.values()[random.nextInt(Priority.values().length)];
+            deadlines[i] = random.nextInt(10) == 0
+                    ? now + random.nextInt(3_600_000)
+                    : PriorityLaneQueue.NO_DEADLINE;
+        }
+        bounded = new PriorityLaneQueue<>(BOUNDED_CAPACITY);
+    }
+
+    @Benchmark
+    public int drain(Blackhole bh) {
+        PriorityLaneQueue<String> queue = new PriorityLaneQueue<>();
+        for (int i = 0; i < backlog; ++i) {
+            queue.offer(items[i], priorities[i], deadlines[i], PriorityLaneQueue.OverflowPolicy.BLOCK, 0);
+        }
+        long dueBefore = System.currentTimeMillis() + 120_000;
+        int jobs = 0;
+        while (!queue.isEmpty()) {
+            // A short batch is checked for due items as run() does, the tail goes out as it would after queueMaxWaitSec
+            if (queue.size() < jobSize) { bh.consume(queue.hasDueBefore(dueBefore)); }
+            bh.consume(queue.pollBatch(jobSize, dueBefore));
+            jobs++;
+        }
+        return jobs;
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        int next;
+    }
+
+    @Benchmark
+    @Group("submitDrain")
+    @GroupThreads(4)
+    public boolean submit(Producer producer) {
+        int i = producer.next++ % backlog;
+        return bounded.offer(items[i], priorities[i], deadlines[i], PriorityLaneQueue.OverflowPolicy.REJECT, 0);
+    }
+
+    @Benchmark
+    @Group("submitDrain")
+    @GroupThreads(1)
+    public int drainConcurrent(Blackhole bh) {
+        var batch = bounded.pollBatch(jobSize, System.currentTimeMillis() + 120_000);
+        bh.consume(batch);
+        return batch.size();
+    }
+}
@@ -0,0 +1,528 @@
+package io.mindspice.jxch.transact.benchmarks.sim;
+
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.rpc.schemas.object.CoinRecord;
+import io.mindspice.jxch.rpc.schemas.object.CoinSpend;
+import io.mindspice.jxch.rpc.schemas.object.MempoolItem;
+import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
+import io.mindspice.jxch.rpc.util.ChiaUtils;
+import io.mindspice.jxch.rpc.util.RPCException;
+import io.mindspice.jxch.transact.benchmarks.Fixtures;
+import io.mindspice.jxch.transact.metrics.Log2Histogram;
+import io.mindspice.jxch.transact.util.G2Element;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/*
+ Simulated chain shared by a SimFullNodeAPI and SimWalletAPI: the coin set, a mempool with a cost cap and fee per
+ cost based admission, eviction and replacement, and transaction blocks filled highest fee per cost first. Other
+ users' traffic arrives as background bundles competing for the same block space.
+ Nothing runs on its own, blocks and background bundles due by the virtual clock are applied when the next RPC
+ call comes in, so the chain only advances as fast as the services drive it.
+ Bundles built by the simulated wallet are registered with their additions, fee and cost, standing in for running
+ their puzzles, and signed with real G2 points so bundles aggregated by the framework itself are accepted. Spend
+ bundles the wallet did not build are rejected.
+ */
+public class SimChain {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final SimConfig config;
+    private final VirtualClock clock;
+    private final Random random;
+    // Keeps coin ids unique across chains in the same process, reservations and indexes are shared by wallet id
+    private final String genesisSalt;
+    private int genesisCount;
+
+    private final Map<String, CoinState> coins = new HashMap<>();
+    private final Map<String, Set<String>> unspentByPuzzleHash = new HashMap<>();
+    private final Map<String, Registered> bundles = new HashMap<>();
+    private final Map<String, Registered> bySolution = new HashMap<>();
+    private G2Element lastSignature = G2Element.INFINITY;
+    private long bundleCount;
+
+    private final Map<String, Entry> mempool = new HashMap<>();
+    private final Map<String, Entry> mempoolSpends = new HashMap<>();
+    private final TreeSet<Entry> byFeeRate = new TreeSet<>(
+            Comparator.comparingDouble((Entry e) -> e.feePerCost).thenComparingLong(e -> -e.seq)
+    );
+    private long mempoolCost;
+    private long entrySeq;
+
+    private int height;
+    private long nextBlockAt;
+    private long nextArrivalAt;
+    private final double backgroundArrivalMs;
+
+    private final Stats stats = new Stats();
+
+
+    static final class CoinState {
+        final Coin coin;
+        final int confirmedHeight;
+        final long timestamp;
+        int spentHeight = -1;
+
+        CoinState(Coin coin, int confirmedHeight, long timestamp) {
+            this.coin = coin;
+            this.confirmedHeight = confirmedHeight;
+            this.timestamp = timestamp;
+        }
+    }
+
+    // What a bundle built by the simulated wallet spends and creates, items are the deliveries it carries
+    public record BundleInfo(List<Coin> removals, List<Coin> additions, long fee, long cost, int items) {
+        BundleInfo merge(BundleInfo other) {
+            List<Coin> allRemovals = new ArrayList<>(removals);
+            allRemovals.addAll(other.removals);
+            List<Coin> allAdditions = new ArrayList<>(additions);
+            allAdditions.addAll(other.additions);
+            return new BundleInfo(allRemovals, allAdditions, fee + other.fee, cost + other.cost, items + other.items);
+        }
+    }
+
+    private static final class Entry {
+        final String name;
+        final BundleInfo info;
+        final List<String> removalIds;
+        final double feePerCost;
+        final long seq;
+        final long enteredAt;
+        final MempoolItem item;
+
+        Entry(String name, BundleInfo info, List<String> removalIds, long seq, long enteredAt) {
+            this.name = name;
+            this.info = info;
+            this.removalIds = removalIds;
+            this.feePerCost = (double) info.fee / info.cost;
+            this.seq = seq;
+            this.enteredAt = enteredAt;
+            this.item = Fixtures.mempoolItem(name, info.cost, info.fee);
+        }
+
+        boolean isBackground() {
+            return removalIds.isEmpty();
+        }
+    }
+
+    private record Registered(BundleInfo info, G2Element signature) { }
+
+    public record PushResult(String bundleName, String error) {
+        public boolean success() {
+            return error == null;
+        }
+    }
+
+    public record StatsSnapshot(
+            long simulatedMs,
+            int blocks,
+            long bundlesConfirmed,
+            long itemsConfirmed,
+            double itemsPerHour,
+            double itemsPerBlock,
+            long feesPaid,
+            double feePerItem,
+            long backgroundConfirmed,
+            int mempoolSize,
+            long mempoolCost,
+            long pushes,
+            Map<String, Long> pushErrors,
+            long rpcCalls,
+            long rpcFailures,
+            // Seconds from the first accepted push of a bundle spending the coin to its inclusion
+            Log2Histogram.Snapshot timeToConfirmSec
+    ) { }
+
+    private static final class Stats {
+        long bundlesConfirmed;
+        long itemsConfirmed;
+        long feesPaid;
+        long backgroundConfirmed;
+        long pushes;
+        long rpcCalls;
+        long rpcFailures;
+        final Map<String, Long> pushErrors = new TreeMap<>();
+        final Map<String, Long> firstPushAt = new HashMap<>();
+        final Log2Histogram timeToConfirm = new Log2Histogram();
+    }
+
+    public SimChain(SimConfig config, VirtualClock clock) {
+        this.config = config;
+        this.clock = clock;
+        this.random = new Random(config.seed);
+        this.genesisSalt = "sim-" + INSTANCES.incrementAndGet() + "-" + config.seed;
+        double meanBackgroundCost = (config.backgroundCostMin + config.backgroundCostMax) / 2.0;
+        this.backgroundArrivalMs = config.backgroundLoad <= 0 ? 0
+                : config.blockIntervalMs * meanBackgroundCost / (config.backgroundLoad * config.blockCostLimit);
+        long now = clock.millis();
+        this.nextBlockAt = now + exponential(config.blockIntervalMs);
+        this.nextArrivalAt = backgroundArrivalMs == 0 ? Long.MAX_VALUE : now + exponential(backgroundArrivalMs);
+    }
+
+    public SimConfig config() {
+        return config;
+    }
+
+    public VirtualClock clock() {
+        return clock;
+    }
+
+    /* RPC model */
+
+    // Every simulated call pays its latency on the clock, may fail, then sees the chain as of its arrival
+    synchronized void rpc(String method, long latencyMs) throws RPCException {
+        clock.advance(latencyMs + exponential(config.latencyJitterMs));
+        stats.rpcCalls++;
+        if (config.rpcFailureRate > 0 && random.nextDouble() < config.rpcFailureRate) {
+            stats.rpcFailures++;
+            throw new RPCException("Simulated RPC failure: " + method);
+        }
+        catchUp();
+    }
+
+    // Applies blocks and background arrivals due by the clock
+    public synchronized void catchUp() {
+        long now = clock.millis();
+        while (true) {
+            if (nextArrivalAt <= nextBlockAt && nextArrivalAt <= now) {
+                addBackground(nextArrivalAt);
+                nextArrivalAt += Math.max(1, exponential(backgroundArrivalMs));
+            } else if (nextBlockAt <= now) {
+                farmBlock(nextBlockAt);
+                nextBlockAt += Math.max(1, exponential(config.blockIntervalMs));
+            } else {
+                return;
+            }
+        }
+    }
+
+    /* Coin set */
+
+    // Coin confirmed at genesis, funding the simulated wallets
+    public synchronized Coin genesisCoin(String puzzleHash, long amount) {
+        Coin coin = Fixtures.coin(sha256Hex(genesisSalt + "-" + genesisCount++), puzzleHash, amount);
+        addCoin(coin, 0, clock.millis());
+        return coin;
+    }
+
+    public synchronized Optional<CoinRecord> coinRecord(String coinId) {
+        CoinState state = coins.get(coinId);
+        return state == null ? Optional.empty() : Optional.of(toRecord(state));
+    }
+
+    public synchronized List<CoinRecord> coinRecords(List<String> coinIds, boolean includeSpent) {
+        List<CoinRecord> records = new ArrayList<>(coinIds.size());
+        for (String coinId : coinIds) {
+            CoinState state = coins.get(coinId);
+            if (state != null && (includeSpent || state.spentHeight < 0)) { records.add(toRecord(state)); }
+        }
+        return records;
+    }
+
+    public synchronized List<CoinRecord> unspentAt(String puzzleHash) {
+        Set<String> coinIds = unspentByPuzzleHash.get(puzzleHash);
+        if (coinIds == null) { return List.of(); }
+        return coinIds.stream().map(id -> toRecord(coins.get(id))).toList();
+    }
+
+    public synchronized boolean isUnspent(String coinId) {
+        CoinState state = coins.get(coinId);
+        return state != null && state.spentHeight < 0;
+    }
+
+    // Coin is spent by a bundle waiting in the mempool
+    public synchronized boolean isPendingSpend(String coinId) {
+        return mempoolSpends.containsKey(coinId);
+    }
+
+    public synchronized int peakHeight() {
+        return height;
+    }
+
+    private void addCoin(Coin coin, int confirmedHeight, long timestamp) {
+        String coinId = ChiaUtils.getCoinId(coin);
+        coins.put(coinId, new CoinState(coin, confirmedHeight, timestamp));
+        unspentByPuzzleHash.computeIfAbsent(coin.puzzleHash(), ph -> new LinkedHashSet<>()).add(coinId);
+    }
+
+    private void spendCoin(String coinId, int spentHeight) {
+        CoinState state = coins.get(coinId);
+        state.spentHeight = spentHeight;
+        Set<String> coinIds = unspentByPuzzleHash.get(state.coin.puzzleHash());
+        if (coinIds != null) { coinIds.remove(coinId); }
+    }
+
+    private static CoinRecord toRecord(CoinState state) {
+        return Fixtures.coinRecord(state.coin, state.confirmedHeight, state.spentHeight, state.timestamp);
+    }
+
+    /* Bundles */
+
+    // Registers a bundle built by the simulated wallet, its cost is derived from what it spends and creates
+    public synchronized SpendBundle buildBundle(List<Coin> removals, List<Coin> additions, long fee, int items,
+            long extraCost) {
+        long cost = removals.size() * config.costPerCoinSpend + additions.size() * config.costPerAddition + extraCost;
+        BundleInfo info = new BundleInfo(List.copyOf(removals), List.copyOf(additions), fee, cost, items);
+
+        // Each bundle is signed with the next multiple of the generator and marks its spends with its own solution,
+        // which is how an aggregate of it is traced back to it
+        lastSignature = lastSignature.add(G2Element.GENERATOR);
+        String solution = String.format("0x%016x", ++bundleCount);
+        SpendBundle bundle = Fixtures.spendBundle(lastSignature.toHex(), info.removals, solution);
+        Registered registered = new Registered(info, lastSignature);
+        bySolution.put(solution, registered);
+        bundles.put(bundleKey(bundle), registered);
+        return bundle;
+    }
+
+    // Aggregate as the wallet's aggregate_spends returns it, null if a bundle was not built by the simulated wallet
+    public synchronized SpendBundle aggregate(List<SpendBundle> spendBundles) {
+        BundleInfo merged = null;
+        G2Element signature = G2Element.INFINITY;
+        List<CoinSpend> coinSpends = new ArrayList<>();
+        for (SpendBundle bundle : spendBundles) {
+            Registered registered = resolve(bundle);
+            if (registered == null) { return null; }
+            merged = merged == null ? registered.info : merged.merge(registered.info);
+            signature = signature.add(registered.signature);
+            coinSpends.addAll(bundle.coinSpends());
+        }
+        if (merged == null) { return null; }
+        SpendBundle aggregated = new SpendBundle(signature.toHex(), coinSpends);
+        bundles.put(bundleKey(aggregated), new Registered(merged, signature));
+        return aggregated;
+    }
+
+    public synchronized Optional<BundleInfo> bundleInfo(SpendBundle bundle) {
+        return Optional.ofNullable(resolve(bundle)).map(Registered::info);
+    }
+
+    public static String bundleName(SpendBundle bundle) {
+        return sha256Hex(bundleKey(bundle));
+    }
+
+    // Bundles aggregated outside the wallet are traced back to the wallet's bundles through their spends' solutions,
+    // and only accepted if their signature is the sum of those bundles' signatures, as a node would verify it
+    private Registered resolve(SpendBundle bundle) {
+        String key = bundleKey(bundle);
+        Registered registered = bundles.get(key);
+        if (registered != null) { return registered; }
+
+        Set<Registered> parts = new LinkedHashSet<>();
+        for (CoinSpend spend : bundle.coinSpends()) {
+            Registered part = bySolution.get(spend.solution());
+            if (part == null) { return null; }
+            parts.add(part);
+        }
+        BundleInfo merged = null;
+        G2Element signature = G2Element.INFINITY;
+        for (Registered part : parts) {
+            merged = merged == null ? part.info : merged.merge(part.info);
+            signature = signature.add(part.signature);
+        }
+        if (merged == null || !signature.toHex().equalsIgnoreCase(bundle.aggregatedSignature())) { return null; }
+        registered = new Registered(merged, signature);
+        bundles.put(key, registered);
+        return registered;
+    }
+
+    // Signatures alone are not unique, the sum of two bundles' signatures is a later bundle's own
+    private static String bundleKey(SpendBundle bundle) {
+        StringBuilder key = new StringBuilder(bundle.aggregatedSignature().toLowerCase());
+        bundle.coinSpends().forEach(spend -> key.append(':').append(spend.solution()));
+        return key.toString();
+    }
+
+    /* Mempool */
+
+    public synchronized Map<String, MempoolItem> mempoolItems() {
+        Map<String, MempoolItem> items = new HashMap<>(mempool.size() * 2);
+        mempool.forEach((name, entry) -> items.put(name, entry.item));
+        return items;
+    }
+
+    public synchronized long mempoolCost() {
+        return mempoolCost;
+    }
+
+    public synchronized PushResult push(SpendBundle bundle) {
+        stats.pushes++;
+        String name = bundleName(bundle);
+        PushResult result = admit(name, bundle);
+        if (!result.success()) { stats.pushErrors.merge(result.error, 1L, Long::sum); }
+        return result;
+    }
+
+    private PushResult admit(String name, SpendBundle bundle) {
+        if (mempool.containsKey(name)) { return new PushResult(name, null); } // Already pending, as a node reports
+
+        List<String> removalIds = new ArrayList<>(bundle.coinSpends().size());
+        for (CoinSpend spend : bundle.coinSpends()) {
+            String coinId = ChiaUtils.getCoinId(spend.coin());
+            CoinState state = coins.get(coinId);
+            if (state == null) { return new PushResult(name, "UNKNOWN_UNSPENT"); }
+            if (state.spentHeight >= 0) { return new PushResult(name, "DOUBLE_SPEND"); }
+            removalIds.add(coinId);
+        }
+        Registered registered = resolve(bundle);
+        BundleInfo info = registered == null ? null : registered.info;
+        if (info == null || removalIds.isEmpty()) { return new PushResult(name, "INVALID_SPEND_BUNDLE"); }
+
+        double feePerCost = (double) info.fee / info.cost;
+        if (info.fee > 0 && feePerCost < config.minNonZeroFeePerCost) {
+            return new PushResult(name, "INVALID_FEE_TOO_CLOSE_TO_ZERO");
+        }
+
+        // Replace by fee, the bundle must spend every coin of the bundles it conflicts with and outbid them
+        Set<Entry> conflicts = new HashSet<>();
+        for (String coinId : removalIds) {
+            Entry conflict = mempoolSpends.get(coinId);
+            if (conflict != null) { conflicts.add(conflict); }
+        }
+        long conflictFee = 0;
+        long conflictCost = 0;
+        for (Entry conflict : conflicts) {
+            if (!removalIds.containsAll(conflict.removalIds)) { return new PushResult(name, "MEMPOOL_CONFLICT"); }
+            conflictFee += conflict.info.fee;
+            conflictCost += conflict.info.cost;
+        }
+        if (!conflicts.isEmpty() && (info.fee < conflictFee + config.minReplaceFeeIncrease
+                || feePerCost <= (double) conflictFee / conflictCost)) {
+            return new PushResult(name, "MEMPOOL_CONFLICT");
+        }
+
+        List<Entry> evicted = evictionsFor(info.cost - conflictCost, feePerCost, conflicts);
+        if (evicted == null) { return new PushResult(name, "INVALID_FEE_LOW_FEE"); }
+        conflicts.forEach(this::removeEntry);
+        evicted.forEach(this::removeEntry);
+
+        Entry entry = new Entry(name, info, removalIds, entrySeq++, clock.millis());
+        addEntry(entry);
+        stats.firstPushAt.putIfAbsent(removalIds.get(0), clock.millis());
+        return new PushResult(name, null);
+    }
+
+    // Lowest fee per cost entries that must leave for the cost to fit, null if it only fits by evicting
+    // entries paying as much or more than feePerCost
+    private List<Entry> evictionsFor(long addedCost, double feePerCost, Set<Entry> skip) {
+        long excess = mempoolCost + addedCost - config.mempoolMaxCost;
+        if (excess <= 0) { return List.of(); }
+        List<Entry> evicted = new ArrayList<>();
+        for (Entry entry : byFeeRate) {
+            if (entry.feePerCost >= feePerCost) { return null; }
+            if (skip.contains(entry)) { continue; }
+            evicted.add(entry);
+            excess -= entry.info.cost;
+            if (excess <= 0) { return evicted; }
+        }
+        return null;
+    }
+
+    private void addEntry(Entry entry) {
+        mempool.put(entry.name, entry);
+        byFeeRate.add(entry);
+        entry.removalIds.forEach(id -> mempoolSpends.put(id, entry));
+        mempoolCost += entry.info.cost;
+    }
+
+    private void removeEntry(Entry entry) {
+        mempool.remove(entry.name);
+        byFeeRate.remove(entry);
+        entry.removalIds.forEach(mempoolSpends::remove);
+        mempoolCost -= entry.info.cost;
+    }
+
+    private void addBackground(long at) {
+        long cost = config.backgroundCostMin + (long) (random.nextDouble() * (config.backgroundCostMax - config.backgroundCostMin));
+        double feePerCost = random.nextDouble() < config.backgroundZeroFeeFraction ? 0
+                : config.minNonZeroFeePerCost + Math.abs(random.nextGaussian() * config.backgroundFeePerCostSigma);
+        BundleInfo info = new BundleInfo(List.of(), List.of(), (long) (cost * feePerCost), cost, 0);
+        List<Entry> evicted = evictionsFor(cost, (double) info.fee / cost, Set.of());
+        if (evicted == null) { return; } // Priced out, the sender gives up
+        evicted.forEach(this::removeEntry);
+        byte[] id = new byte[32];
+        random.nextBytes(id);
+        addEntry(new Entry("0x" + HexFormat.of().formatHex(id), info, List.of(), entrySeq++, at));
+    }
+
+    /* Blocks */
+
+    // Fills the block highest fee per cost first, skipping bundles that no longer fit
+    private void farmBlock(long at) {
+        ++height;
+        long remaining = config.blockCostLimit;
+        List<Entry> included = new ArrayList<>();
+        for (Entry entry : byFeeRate.descendingSet()) {
+            if (entry.info.cost <= remaining) {
+                included.add(entry);
+                remaining -= entry.info.cost;
+            }
+            if (remaining < config.backgroundCostMin) { break; }
+        }
+        for (Entry entry : included) {
+            removeEntry(entry);
+            if (entry.isBackground()) {
+                stats.backgroundConfirmed++;
+                continue;
+            }
+            entry.removalIds.forEach(id -> spendCoin(id, height));
+            entry.info.additions.forEach(coin -> addCoin(coin, height, at));
+            stats.bundlesConfirmed++;
+            stats.itemsConfirmed += entry.info.items;
+            stats.feesPaid += entry.info.fee;
+            Long firstPush = stats.firstPushAt.remove(entry.removalIds.get(0));
+            if (firstPush != null) { stats.timeToConfirm.record(at - firstPush); }
+        }
+    }
+
+    /* Stats */
+
+    public synchronized StatsSnapshot stats() {
+        catchUp();
+        long elapsed = clock.elapsedMillis();
+        double hours = elapsed / 3_600_000.0;
+        return new StatsSnapshot(
+                elapsed,
+                height,
+                stats.bundlesConfirmed,
+                stats.itemsConfirmed,
+                hours == 0 ? 0 : stats.itemsConfirmed / hours,
+                height == 0 ? 0 : (double) stats.itemsConfirmed / height,
+                stats.feesPaid,
+                stats.itemsConfirmed == 0 ? 0 : (double) stats.feesPaid / stats.itemsConfirmed,
+                stats.backgroundConfirmed,
+                mempool.size(),
+                mempoolCost,
+                stats.pushes,
+                Map.copyOf(stats.pushErrors),
+                stats.rpcCalls,
+                stats.rpcFailures,
+                stats.timeToConfirm.snapshot(1000)
+        );
+    }
+
+    /* Util */
+
+    long exponential(double mean) {
+        return mean <= 0 ? 0 : (long) (-mean * Math.log(1 - random.nextDouble()));
+    }
+
+    synchronized String randomHash() {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return "0x" + HexFormat.of().formatHex(bytes);
+    }
+
+    static String sha256Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return "0x" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
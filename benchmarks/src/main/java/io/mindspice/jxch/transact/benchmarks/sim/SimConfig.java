@@ -0,0 +1,41 @@
+package io.mindspice.jxch.transact.benchmarks.sim;
+
+
+// Settings of the simulated chain, node and wallet. Costs are in CLVM cost units, fees in mojos, times in virtual ms
+public class SimConfig {
+
+    public long seed = 1;
+    public long startMillis = 1_700_000_000_000L;
+
+    // Transaction blocks arrive as a Poisson process with this mean interval
+    public long blockIntervalMs = 52_000;
+    public long blockCostLimit = 11_000_000_000L;
+    public long mempoolMaxCost = 550_000_000_000L;
+    // Bundles with a fee below this fee per cost are rejected with INVALID_FEE_TOO_CLOSE_TO_ZERO, zero fee is allowed
+    public long minNonZeroFeePerCost = 5;
+    // A bundle replacing one in the mempool must raise the fee by this much and pay a higher fee per cost
+    public long minReplaceFeeIncrease = 10_000_000;
+
+    // Cost other users add to the mempool per block interval, as a fraction of blockCostLimit. Above 1.0 the
+    // mempool fills up and inclusion becomes a fee auction
+    public double backgroundLoad = 0.3;
+    public long backgroundCostMin = 5_000_000;
+    public long backgroundCostMax = 205_000_000;
+    public double backgroundZeroFeeFraction = 0.25;
+    // Fee per cost of paying background bundles is 1 + |N(0, sigma)|
+    public double backgroundFeePerCostSigma = 30;
+
+    // Cost model of bundles built by the simulated wallet
+    public long costPerCoinSpend = 10_000_000;
+    public long costPerAddition = 1_800_000;
+    public long costPerNft = 60_000_000;
+
+    // Each call advances the clock by latency + Exp(jitter), then fails with RPCException at the failure rate
+    public long nodeLatencyMs = 10;
+    public long walletLatencyMs = 40;
+    public long latencyJitterMs = 10;
+    public double rpcFailureRate = 0;
+
+    // Coins used by a bundle the wallet built are not handed out again for this long unless the bundle confirms
+    public long walletCoinClaimMs = 600_000;
+}
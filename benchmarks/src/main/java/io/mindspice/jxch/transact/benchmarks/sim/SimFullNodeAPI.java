@@ -0,0 +1,85 @@
+package io.mindspice.jxch.transact.benchmarks.sim;
+
+import io.mindspice.jxch.rpc.http.FullNodeAPI;
+import io.mindspice.jxch.rpc.schemas.ApiResponse;
+import io.mindspice.jxch.rpc.schemas.fullnode.BlockChainState;
+import io.mindspice.jxch.rpc.schemas.fullnode.InclusionCost;
+import io.mindspice.jxch.rpc.schemas.fullnode.SpendBundleStatus;
+import io.mindspice.jxch.rpc.schemas.object.CoinRecord;
+import io.mindspice.jxch.rpc.schemas.object.MempoolItem;
+import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
+import io.mindspice.jxch.rpc.util.RPCException;
+import io.mindspice.jxch.transact.benchmarks.Fixtures;
+
+import java.util.List;
+import java.util.Map;
+
+
+// Full node endpoints used by the framework, answered from a SimChain
+public class SimFullNodeAPI extends FullNodeAPI {
+    private final SimChain chain;
+
+
+    public SimFullNodeAPI(SimChain chain) {
+        super(null);
+        this.chain = chain;
+    }
+
+    public SimChain chain() {
+        return chain;
+    }
+
+    private void call(String method) throws RPCException {
+        chain.rpc(method, chain.config().nodeLatencyMs);
+    }
+
+    @Override
+    public ApiResponse<SpendBundleStatus> pushTx(SpendBundle spendBundle) throws RPCException {
+        call("push_tx");
+        SimChain.PushResult result = chain.push(spendBundle);
+        if (!result.success()) { return SimResponse.error(result.error()); }
+        return SimResponse.ok(Fixtures.convert(
+                Map.of("status", "SUCCESS", "spend_bundle_name", result.bundleName()), SpendBundleStatus.class
+        ));
+    }
+
+    @Override
+    public ApiResponse<Map<String, MempoolItem>> getAllMempoolItems() throws RPCException {
+        call("get_all_mempool_items");
+        return SimResponse.ok(chain.mempoolItems());
+    }
+
+    @Override
+    public ApiResponse<InclusionCost> getSpendBundleInclusionCost(SpendBundle spendBundle) throws RPCException {
+        call("get_spend_bundle_inclusion_cost");
+        var info = chain.bundleInfo(spendBundle);
+        if (info.isEmpty()) { return SimResponse.error("Unknown spend bundle"); }
+        return SimResponse.ok(Fixtures.convert(
+                Map.of("cost", info.get().cost(), "fee", info.get().fee()), InclusionCost.class
+        ));
+    }
+
+    @Override
+    public ApiResponse<CoinRecord> getCoinRecordByName(String name) throws RPCException {
+        call("get_coin_record_by_name");
+        return chain.coinRecord(name)
+                .map(SimResponse::ok)
+                .orElseGet(() -> SimResponse.error("Coin record " + name + " not found"));
+    }
+
+    @Override
+    public ApiResponse<List<CoinRecord>> getCoinRecordsByNames(List<String> names, boolean includeSpent)
+            throws RPCException {
+        call("get_coin_records_by_names");
+        return SimResponse.ok(chain.coinRecords(names, includeSpent));
+    }
+
+    @Override
+    public ApiResponse<BlockChainState> getBlockchainState() throws RPCException {
+        call("get_blockchain_state");
+        int height = chain.peakHeight();
+        return SimResponse.ok(Fixtures.convert(Map.of(
+                "peak", Map.of("height", height, "header_hash", SimChain.sha256Hex("block-" + height))
+        ), BlockChainState.class));
+    }
+}
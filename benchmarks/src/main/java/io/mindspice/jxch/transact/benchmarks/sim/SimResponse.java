@@ -0,0 +1,20 @@
+package io.mindspice.jxch.transact.benchmarks.sim;
+
+import io.mindspice.jxch.rpc.schemas.ApiResponse;
+
+import java.util.Optional;
+
+
+// Responses of the simulated APIs, shaped like the RPC library's for a successful or failed call
+final class SimResponse {
+
+    private SimResponse() { }
+
+    static <T> ApiResponse<T> ok(T data) {
+        return new ApiResponse<>(Optional.of(data), true, null);
+    }
+
+    static <T> ApiResponse<T> error(String error) {
+        return new ApiResponse<>(Optional.empty(), false, error);
+    }
+}
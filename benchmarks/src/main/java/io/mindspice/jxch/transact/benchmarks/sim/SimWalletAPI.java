@@ -0,0 +1,253 @@
+package io.mindspice.jxch.transact.benchmarks.sim;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.mindspice.jxch.rpc.http.WalletAPI;
+import io.mindspice.jxch.rpc.schemas.ApiResponse;
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.rpc.schemas.object.CoinRecord;
+import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
+import io.mindspice.jxch.rpc.schemas.wallet.DidInfo;
+import io.mindspice.jxch.rpc.schemas.wallet.SignedTransaction;
+import io.mindspice.jxch.rpc.schemas.wallet.SpendableCoins;
+import io.mindspice.jxch.rpc.schemas.wallet.SyncStatus;
+import io.mindspice.jxch.rpc.schemas.wallet.nft.NftBundle;
+import io.mindspice.jxch.rpc.util.ChiaUtils;
+import io.mindspice.jxch.rpc.util.RPCException;
+import io.mindspice.jxch.transact.benchmarks.Fixtures;
+
+import java.util.*;
+
+
+/*
+ Wallet endpoints used by the framework, building and "signing" bundles against a SimChain. Wallets are sets of
+ puzzle hashes by wallet id, funded with fund() and extended with registerAddress() for change targets.
+ A bulk mint's xch_coins must be full coin dicts (parent_coin_info, puzzle_hash, amount) of unspent coins, as the
+ wallet's Coin.from_json_dict requires, any other entry fails the request.
+ DID wallets are not simulated, services must run with mintFromDid disabled.
+ */
+public class SimWalletAPI extends WalletAPI {
+    private final SimChain chain;
+    private final Map<String, Integer> addresses = new HashMap<>();
+    private final Map<Integer, List<String>> walletAddresses = new HashMap<>();
+    // Coins spent by bundles this wallet built, by claim expiry
+    private final Map<String, Long> claims = new HashMap<>();
+    private volatile boolean synced = true;
+
+
+    public SimWalletAPI(SimChain chain) {
+        super(null);
+        this.chain = chain;
+    }
+
+    public SimChain chain() {
+        return chain;
+    }
+
+    // Funds the wallet with coins confirmed at genesis, each on its own new address
+    public synchronized List<Coin> fund(int walletId, int count, long amount) {
+        List<Coin> funded = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            funded.add(chain.genesisCoin(newAddress(walletId), amount));
+        }
+        return funded;
+    }
+
+    // Coins sent to the puzzle hash are credited to the wallet
+    public synchronized void registerAddress(int walletId, String puzzleHash) {
+        if (addresses.putIfAbsent(puzzleHash, walletId) == null) {
+            walletAddresses.computeIfAbsent(walletId, id -> new ArrayList<>()).add(puzzleHash);
+        }
+    }
+
+    public synchronized String newAddress(int walletId) {
+        String puzzleHash = chain.randomHash();
+        registerAddress(walletId, puzzleHash);
+        return puzzleHash;
+    }
+
+    // Reports the wallet as syncing while false, jobs hold in AWAITING_SYNC
+    public void setSynced(boolean synced) {
+        this.synced = synced;
+    }
+
+    // Confirmed balance of the wallet
+    public synchronized long balance(int walletId) {
+        return spendable(walletId).stream().mapToLong(r -> r.coin().amount()).sum();
+    }
+
+    private void call(String method) throws RPCException {
+        chain.rpc(method, chain.config().walletLatencyMs);
+    }
+
+    @Override
+    public ApiResponse<SyncStatus> getSyncStatus() throws RPCException {
+        call("get_sync_status");
+        return SimResponse.ok(Fixtures.convert(
+                Map.of("synced", synced, "syncing", !synced, "genesis_initialized", true), SyncStatus.class
+        ));
+    }
+
+    @Override
+    public synchronized ApiResponse<SpendableCoins> getSpendableCoins(JsonNode request) throws RPCException {
+        call("get_spendable_coins");
+        long minAmount = request.path("min_coin_amount").asLong(0);
+        Set<String> excluded = new HashSet<>();
+        request.path("excluded_coins").forEach(c -> excluded.add(ChiaUtils.getCoinId(toCoin(c))));
+
+        List<CoinRecord> records = spendable(request.path("wallet_id").asInt(1)).stream()
+                .filter(r -> r.coin().amount() >= minAmount)
+                .filter(r -> !excluded.contains(ChiaUtils.getCoinId(r.coin())))
+                .toList();
+        return SimResponse.ok(Fixtures.convert(Map.of("confirmed_records", records), SpendableCoins.class));
+    }
+
+    @Override
+    public synchronized ApiResponse<SignedTransaction> createSignedTransaction(JsonNode request) throws RPCException {
+        call("create_signed_transaction");
+        int walletId = request.path("wallet_id").asInt(1);
+        long fee = request.path("fee").asLong(0);
+
+        List<Coin> outputs = new ArrayList<>();
+        long total = 0;
+        for (JsonNode addition : request.path("additions")) {
+            outputs.add(Fixtures.coin("", addition.path("puzzle_hash").asText(), addition.path("amount").asLong()));
+            total += addition.path("amount").asLong();
+        }
+
+        List<Coin> inputs = new ArrayList<>();
+        for (JsonNode coin : request.path("coins")) { inputs.add(toCoin(coin)); }
+        if (inputs.isEmpty()) { inputs = selectInputs(walletId, total + fee); }
+        if (inputs == null) { return SimResponse.error("Can't spend more than wallet balance: " + (total + fee)); }
+        for (Coin coin : inputs) {
+            if (!chain.isUnspent(ChiaUtils.getCoinId(coin))) {
+                return SimResponse.error("Coin not spendable: " + ChiaUtils.getCoinId(coin));
+            }
+        }
+
+        long change = inputs.stream().mapToLong(Coin::amount).sum() - total - fee;
+        if (change < 0) { return SimResponse.error("Coins selected are less than the spend amount: " + (total + fee)); }
+        if (change > 0) { outputs.add(Fixtures.coin("", newAddress(walletId), change)); }
+
+        // Outputs are created by the first coin spent
+        String parent = ChiaUtils.getCoinId(inputs.get(0));
+        List<Coin> additions = outputs.stream().map(o -> Fixtures.coin(parent, o.puzzleHash(), o.amount())).toList();
+        int items = (int) additions.stream().filter(c -> !addresses.containsKey(c.puzzleHash())).count();
+
+        claim(inputs);
+        SpendBundle bundle = chain.buildBundle(inputs, additions, fee, items, 0);
+        return SimResponse.ok(Fixtures.convert(
+                Map.of("additions", additions, "spend_bundle", bundle), SignedTransaction.class
+        ));
+    }
+
+    @Override
+    public ApiResponse<SpendBundle> aggregateSpends(List<SpendBundle> spendBundles) throws RPCException {
+        call("aggregate_spends");
+        SpendBundle aggregated = chain.aggregate(spendBundles);
+        return aggregated == null ? SimResponse.error("Unknown spend bundle") : SimResponse.ok(aggregated);
+    }
+
+    @Override
+    public synchronized ApiResponse<NftBundle> nftMintBulk(JsonNode request) throws RPCException {
+        call("nft_mint_bulk");
+        int total = request.path("mint_total").asInt(request.path("target_list").size());
+        long fee = request.path("fee").asLong(0);
+        String changeTarget = request.path("xch_change_target").asText(null);
+
+        List<Coin> inputs = new ArrayList<>();
+        for (JsonNode xchCoin : request.path("xch_coins")) {
+            // Parsed like the wallet's Coin.from_json_dict, anything but a full coin dict is rejected
+            if (!xchCoin.path("parent_coin_info").isTextual() || !xchCoin.path("puzzle_hash").isTextual()
+                    || !xchCoin.path("amount").isIntegralNumber()) {
+                return SimResponse.error("Invalid coin in xch_coins: " + xchCoin);
+            }
+            Coin coin = toCoin(xchCoin);
+            Optional<CoinRecord> record = chain.coinRecord(ChiaUtils.getCoinId(coin));
+            if (record.isEmpty() || record.get().spent()) {
+                return SimResponse.error("No unspent coin for: " + ChiaUtils.getCoinId(coin));
+            }
+            inputs.add(coin);
+        }
+        if (inputs.isEmpty()) {
+            inputs = selectInputs(request.path("wallet_id").asInt(1), total + fee);
+            if (inputs == null) { return SimResponse.error("Can't spend more than wallet balance: " + (total + fee)); }
+        }
+
+        // Each NFT is launched from a 1 mojo coin, the rest returns as change
+        long change = inputs.stream().mapToLong(Coin::amount).sum() - total - fee;
+        if (change < 0) { return SimResponse.error("Funding coins do not cover the mint: " + (total + fee)); }
+        String parent = ChiaUtils.getCoinId(inputs.get(0));
+        List<Coin> additions = new ArrayList<>();
+        if (change > 0) {
+            String puzzleHash = changeTarget != null ? changeTarget : inputs.get(0).puzzleHash();
+            additions.add(Fixtures.coin(parent, puzzleHash, change));
+        }
+        List<String> nftIds = new ArrayList<>(total);
+        for (int i = 0; i < total; ++i) {
+            nftIds.add("nft1" + SimChain.sha256Hex(parent + "-" + i).substring(2, 60));
+        }
+
+        claim(inputs);
+        SpendBundle bundle = chain.buildBundle(inputs, additions, fee, total, total * chain.config().costPerNft);
+        return SimResponse.ok(Fixtures.convert(
+                Map.of("nft_id_list", nftIds, "spend_bundle", bundle), NftBundle.class
+        ));
+    }
+
+    @Override
+    public ApiResponse<DidInfo> didGetDID(int walletId) throws RPCException {
+        call("did_get_did");
+        return SimResponse.error("DID wallets are not simulated");
+    }
+
+    @Override
+    public ApiResponse<DidInfo> didGetInfo(String coinId) throws RPCException {
+        call("did_get_info");
+        return SimResponse.error("DID wallets are not simulated");
+    }
+
+    // Confirmed unspent coins of the wallet not already spent by a bundle in the mempool
+    private List<CoinRecord> spendable(int walletId) {
+        List<CoinRecord> records = new ArrayList<>();
+        for (String puzzleHash : walletAddresses.getOrDefault(walletId, List.of())) {
+            for (CoinRecord record : chain.unspentAt(puzzleHash)) {
+                if (!chain.isPendingSpend(ChiaUtils.getCoinId(record.coin()))) { records.add(record); }
+            }
+        }
+        return records;
+    }
+
+    // Largest unclaimed coins first until the amount is covered, null if it cannot be
+    private List<Coin> selectInputs(int walletId, long amount) {
+        List<Coin> candidates = spendable(walletId).stream()
+                .map(CoinRecord::coin)
+                .filter(c -> !isClaimed(ChiaUtils.getCoinId(c)))
+                .sorted(Comparator.comparingLong(Coin::amount).reversed())
+                .toList();
+        List<Coin> selected = new ArrayList<>();
+        long sum = 0;
+        for (Coin coin : candidates) {
+            if (sum >= amount && !selected.isEmpty()) { break; }
+            selected.add(coin);
+            sum += coin.amount();
+        }
+        return sum >= amount && !selected.isEmpty() ? selected : null;
+    }
+
+    private void claim(List<Coin> coins) {
+        long until = chain.clock().millis() + chain.config().walletCoinClaimMs;
+        coins.forEach(c -> claims.put(ChiaUtils.getCoinId(c), until));
+    }
+
+    private boolean isClaimed(String coinId) {
+        Long until = claims.get(coinId);
+        if (until == null) { return false; }
+        if (until > chain.clock().millis() && chain.isUnspent(coinId)) { return true; }
+        claims.remove(coinId);
+        return false;
+    }
+
+    private static Coin toCoin(JsonNode json) {
+        return Fixtures.convert(json, Coin.class);
+    }
+}
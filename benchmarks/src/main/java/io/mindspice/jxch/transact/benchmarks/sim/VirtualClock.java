@@ -0,0 +1,48 @@
+package io.mindspice.jxch.transact.benchmarks.sim;
+
+import io.mindspice.jxch.transact.util.TClock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+// Simulated time, only moves when advanced by the scheduler running a later task or by simulated RPC latency
+public class VirtualClock implements TClock.Source {
+    private final long startMillis;
+    private final AtomicLong nanos = new AtomicLong();
+
+
+    public VirtualClock(long startMillis) {
+        this.startMillis = startMillis;
+    }
+
+    @Override
+    public long millis() {
+        return startMillis + TimeUnit.NANOSECONDS.toMillis(nanos.get());
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanos.get();
+    }
+
+    // Millis since the clock started
+    public long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+    }
+
+    public void advance(long millis) {
+        if (millis > 0) { nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis)); }
+    }
+
+    // Moves the clock forward to the nano time, never back
+    public void advanceTo(long nanoTime) {
+        nanos.accumulateAndGet(nanoTime, Math::max);
+    }
+
+    // Makes this the framework's time source
+    public VirtualClock install() {
+        TClock.set(this);
+        return this;
+    }
+}
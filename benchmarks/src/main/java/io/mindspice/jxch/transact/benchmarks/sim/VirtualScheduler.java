@@ -0,0 +1,214 @@
+package io.mindspice.jxch.transact.benchmarks.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+
+/*
+ Discrete event ScheduledExecutorService on a VirtualClock. Tasks are queued by their due virtual time and only run
+ when the owner drives the scheduler with runFor/runUntil, on the driving thread, one at a time. The clock jumps
+ to each task's due time, so hours of service time pass in however long the tasks themselves take to run.
+ Services must run with nonBlockingEngine, the blocking engine sleeps its thread which would stall the simulation.
+ */
+public class VirtualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+    private final VirtualClock clock;
+    private final PriorityQueue<Task<?>> tasks = new PriorityQueue<>();
+    private long sequence;
+    private long executed;
+    private volatile boolean shutdown;
+
+
+    private final class Task<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        private final long seq;
+        private final long period; // > 0 fixed rate, < 0 fixed delay, 0 one shot
+        private long dueNanos;
+
+        Task(Callable<V> callable, long dueNanos) {
+            super(callable);
+            this.dueNanos = dueNanos;
+            this.period = 0;
+            this.seq = nextSequence();
+        }
+
+        Task(Runnable runnable, long dueNanos, long period) {
+            super(runnable, null);
+            this.dueNanos = dueNanos;
+            this.period = period;
+            this.seq = nextSequence();
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - clock.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof Task<?> task) {
+                int cmp = Long.compare(dueNanos, task.dueNanos);
+                return cmp != 0 ? cmp : Long.compare(seq, task.seq);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset() && !shutdown) {
+                dueNanos = period > 0 ? dueNanos + period : clock.nanoTime() - period;
+                enqueue(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) { remove(this); }
+            return cancelled;
+        }
+    }
+
+    public VirtualScheduler(VirtualClock clock) {
+        this.clock = clock;
+    }
+
+    public VirtualClock clock() {
+        return clock;
+    }
+
+    // Runs due tasks in order until the clock reaches now + millis, returns the number of tasks run
+    public long runFor(long millis) {
+        long until = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long ran = drain(() -> false, until);
+        clock.advanceTo(until);
+        return ran;
+    }
+
+    // Runs due tasks in order until done returns true (checked after each task), no task is due before maxMillis
+    // from now or no tasks are left. Returns true if done was reached
+    public boolean runUntil(BooleanSupplier done, long maxMillis) {
+        long until = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        drain(done, until);
+        return done.getAsBoolean();
+    }
+
+    private long drain(BooleanSupplier done, long untilNanos) {
+        long ran = 0;
+        while (!done.getAsBoolean()) {
+            Task<?> task;
+            synchronized (tasks) {
+                task = tasks.peek();
+                if (task == null || task.dueNanos > untilNanos) { break; }
+                tasks.poll();
+            }
+            // Tasks behind an RPC's simulated latency run late, the clock is never moved back
+            clock.advanceTo(task.dueNanos);
+            task.run();
+            ++ran;
+            ++executed;
+        }
+        return ran;
+    }
+
+    public int pending() {
+        synchronized (tasks) {
+            return tasks.size();
+        }
+    }
+
+    public long executed() {
+        return executed;
+    }
+
+    private synchronized long nextSequence() {
+        return sequence++;
+    }
+
+    private <V> Task<V> enqueue(Task<V> task) {
+        if (shutdown && !task.isPeriodic()) { throw new RejectedExecutionException("Scheduler is shut down"); }
+        synchronized (tasks) {
+            tasks.add(task);
+        }
+        return task;
+    }
+
+    private void remove(Task<?> task) {
+        synchronized (tasks) {
+            tasks.remove(task);
+        }
+    }
+
+    private long dueIn(long delay, TimeUnit unit) {
+        return clock.nanoTime() + Math.max(0, unit.toNanos(delay));
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return enqueue(new Task<>(command, dueIn(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return enqueue(new Task<>(callable, dueIn(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) { throw new IllegalArgumentException("Period must be positive"); }
+        return enqueue(new Task<>(command, dueIn(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) { throw new IllegalArgumentException("Delay must be positive"); }
+        return enqueue(new Task<>(command, dueIn(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        synchronized (tasks) {
+            tasks.removeIf(Task::isPeriodic);
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        synchronized (tasks) {
+            List<Runnable> rtn = new ArrayList<>(tasks);
+            tasks.clear();
+            return rtn;
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && pending() == 0;
+    }
+
+    // Nothing runs unless the scheduler is driven, so this does not wait
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return isTerminated();
+    }
+}
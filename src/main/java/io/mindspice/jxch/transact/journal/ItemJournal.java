@@ -0,0 +1,439 @@
+package io.mindspice.jxch.transact.journal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+
+/*
+ Append only, memory mapped write-ahead journal of a service's items and in-flight jobs. Records are appended to
+ fixed size segment files as [length][crc32][type][payload], the length is written last so a torn record fails
+ its crc and ends replay.
+ Records: SUBMIT an item, BATCH items into a job, PUSH a job's checkpoint before its bundle is pushed, COMPLETE a
+ job, and DROP items that were journaled but not queued.
+ Appends only copy into the mapped segment, durability is by group commit: sync(position) forces everything
+ appended so far, and callers arriving while a force is running are covered by the next one instead of each
+ forcing on their own.
+ On open the journal is replayed into the items still queued and the jobs that had pushed a bundle, the live state
+ is then rewritten into a fresh segment and the old segments deleted. While running, segments are deleted oldest
+ first once every record in them is dead.
+ */
+public class ItemJournal implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".jnl";
+    private static final int HEADER_BYTES = 8;
+
+    private static final byte SUBMIT = 1;
+    private static final byte BATCH = 2;
+    private static final byte PUSH = 3;
+    private static final byte COMPLETE = 4;
+    private static final byte DROP = 5;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+
+    // Live record counts per segment and where the live records of items and jobs are, guarded by appendLock
+    private final TreeMap<Long, Integer> liveRecords = new TreeMap<>();
+    private final Map<String, Long> itemSegments = new HashMap<>();
+    private final Map<String, List<Long>> jobSegments = new HashMap<>();
+
+    private long segmentIndex = -1;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int flushedOffset;
+    private long appended;
+    private volatile long durable;
+    private Recovery recovery;
+
+
+    public record PendingItem(String key, int priority, long deadline, byte[] item) { }
+
+    public record InFlightJob(String jobId, List<PendingItem> items, byte[] checkpoint) { }
+
+    public record Recovery(
+            List<PendingItem> pending,
+            List<InFlightJob> inFlight,
+            long records,
+            long bytes,
+            long replayMillis
+    ) {
+        static final Recovery EMPTY = new Recovery(List.of(), List.of(), 0, 0, 0);
+    }
+
+    private ItemJournal(Path dir, int segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+    }
+
+    // Opens the journal in dir, replaying and compacting any existing segments
+    public static ItemJournal open(Path dir, int segmentBytes) throws IOException {
+        Files.createDirectories(dir);
+        ItemJournal journal = new ItemJournal(dir, segmentBytes);
+        journal.recover();
+        return journal;
+    }
+
+    // State replayed when the journal was opened, the items to re-queue and jobs to resume
+    public Recovery recovery() {
+        return recovery;
+    }
+
+    public long submit(String key, int priority, long deadline, byte[] item) {
+        Record record = new Record(SUBMIT).putString(key).putByte(priority).putLong(deadline).putBytes(item);
+        return append(record, seg -> {
+            itemSegments.put(key, seg);
+            addLive(seg, 1);
+        });
+    }
+
+    public long batch(String jobId, List<String> keys) {
+        Record record = new Record(BATCH).putString(jobId).putInt(keys.size());
+        keys.forEach(record::putString);
+        return append(record, seg -> {
+            // The job now owns its items' submit records, they die with it
+            List<Long> segments = jobSegments.computeIfAbsent(jobId, id -> new ArrayList<>());
+            for (String key : keys) {
+                Long itemSeg = itemSegments.remove(key);
+                if (itemSeg != null) { segments.add(itemSeg); }
+            }
+            segments.add(seg);
+            addLive(seg, 1);
+        });
+    }
+
+    public long push(String jobId, byte[] checkpoint) {
+        Record record = new Record(PUSH).putString(jobId).putBytes(checkpoint);
+        return append(record, seg -> {
+            jobSegments.computeIfAbsent(jobId, id -> new ArrayList<>()).add(seg);
+            addLive(seg, 1);
+        });
+    }
+
+    public long complete(String jobId) {
+        return append(new Record(COMPLETE).putString(jobId), seg -> {
+            List<Long> segments = jobSegments.remove(jobId);
+            if (segments != null) { segments.forEach(s -> addLive(s, -1)); }
+        });
+    }
+
+    public long drop(List<String> keys) {
+        Record record = new Record(DROP).putInt(keys.size());
+        keys.forEach(record::putString);
+        return append(record, seg -> {
+            for (String key : keys) {
+                Long itemSeg = itemSegments.remove(key);
+                if (itemSeg != null) { addLive(itemSeg, -1); }
+            }
+        });
+    }
+
+    // Blocks until everything up to position is on disk
+    public void sync(long position) {
+        if (durable >= position) { return; }
+        syncLock.lock();
+        try {
+            // A force by the previous holder may already cover this position
+            if (durable >= position) { return; }
+            MappedByteBuffer toForce;
+            int from;
+            int to;
+            long upTo;
+            appendLock.lock();
+            try {
+                toForce = segment;
+                from = flushedOffset;
+                to = segment.position();
+                upTo = appended;
+                flushedOffset = to;
+            } finally {
+                appendLock.unlock();
+            }
+            if (to > from) { toForce.force(from, to - from); }
+            durable = Math.max(durable, upTo);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public long appended() {
+        appendLock.lock();
+        try {
+            return appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public int segmentCount() {
+        appendLock.lock();
+        try {
+            return liveRecords.size();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync(appended());
+        appendLock.lock();
+        try {
+            if (channel != null) { channel.close(); }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private interface LiveUpdate {
+        void apply(long segment);
+    }
+
+    private long append(Record record, LiveUpdate update) {
+        byte[] body = record.bytes();
+        int total = HEADER_BYTES + body.length;
+        appendLock.lock();
+        try {
+            if (segment == null || segment.remaining() < total) { rollSegment(total); }
+            int start = segment.position();
+            segment.position(start + HEADER_BYTES);
+            segment.put(body);
+            crc.reset();
+            crc.update(body);
+            segment.putInt(start + 4, (int) crc.getValue());
+            segment.putInt(start, body.length);
+            appended += total;
+            update.apply(segmentIndex);
+            return appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void addLive(long seg, int delta) {
+        int live = liveRecords.merge(seg, delta, Integer::sum);
+        if (delta < 0 && live <= 0) { deleteDeadSegments(); }
+    }
+
+    // Deletes dead segments oldest first, stopping at the first live one so a COMPLETE or DROP is never lost
+    // while the records it cancels survive
+    private void deleteDeadSegments() {
+        while (!liveRecords.isEmpty()) {
+            var oldest = liveRecords.firstEntry();
+            if (oldest.getKey() == segmentIndex || oldest.getValue() > 0) { return; }
+            liveRecords.pollFirstEntry();
+            try {
+                Files.deleteIfExists(segmentPath(oldest.getKey()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void rollSegment(int minBytes) {
+        try {
+            if (segment != null) {
+                segment.force();
+                durable = appended;
+                channel.close();
+            }
+            segmentIndex++;
+            channel = FileChannel.open(segmentPath(segmentIndex),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, minBytes + 4));
+            flushedOffset = 0;
+            liveRecords.putIfAbsent(segmentIndex, 0);
+            deleteDeadSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private List<Path> existingSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    private static long indexOf(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class JobReplay {
+        final List<PendingItem> items = new ArrayList<>();
+        byte[] checkpoint;
+    }
+
+    private void recover() throws IOException {
+        List<Path> segments = existingSegments();
+        if (segments.isEmpty()) {
+            recovery = Recovery.EMPTY;
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        Map<String, PendingItem> pending = new LinkedHashMap<>();
+        Map<String, JobReplay> jobs = new LinkedHashMap<>();
+        long records = 0;
+        long bytes = 0;
+
+        for (Path path : segments) {
+            try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                CRC32 check = new CRC32();
+                while (buffer.remaining() >= HEADER_BYTES) {
+                    int start = buffer.position();
+                    int length = buffer.getInt();
+                    int storedCrc = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining()) { break; }
+                    ByteBuffer body = buffer.slice(buffer.position(), length);
+                    check.reset();
+                    check.update(body.duplicate());
+                    if ((int) check.getValue() != storedCrc) { break; } // Torn write, end of the valid log
+                    buffer.position(start + HEADER_BYTES + length);
+                    replay(body, pending, jobs);
+                    records++;
+                    bytes += HEADER_BYTES + length;
+                }
+            }
+            segmentIndex = Math.max(segmentIndex, indexOf(path));
+        }
+
+        // Jobs that never pushed have nothing on chain, their items go back to the queue
+        List<InFlightJob> inFlight = new ArrayList<>();
+        for (var entry : jobs.entrySet()) {
+            JobReplay job = entry.getValue();
+            if (job.checkpoint != null) {
+                inFlight.add(new InFlightJob(entry.getKey(), List.copyOf(job.items), job.checkpoint));
+            } else {
+                job.items.forEach(item -> pending.put(item.key(), item));
+            }
+        }
+        long replayMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        // Compact the live state into fresh segments, then drop the old ones
+        for (PendingItem item : pending.values()) {
+            submit(item.key(), item.priority(), item.deadline(), item.item());
+        }
+        for (InFlightJob job : inFlight) {
+            for (PendingItem item : job.items()) {
+                submit(item.key(), item.priority(), item.deadline(), item.item());
+            }
+            batch(job.jobId(), job.items().stream().map(PendingItem::key).toList());
+            push(job.jobId(), job.checkpoint());
+        }
+        if (segment == null) { rollSegment(0); }
+        sync(appended());
+        for (Path path : segments) {
+            Files.deleteIfExists(path);
+        }
+
+        recovery = new Recovery(List.copyOf(pending.values()), inFlight, records, bytes, replayMillis);
+    }
+
+    private static void replay(ByteBuffer body, Map<String, PendingItem> pending, Map<String, JobReplay> jobs) {
+        byte type = body.get();
+        switch (type) {
+            case SUBMIT -> {
+                String key = getString(body);
+                int priority = body.get();
+                long deadline = body.getLong();
+                pending.put(key, new PendingItem(key, priority, deadline, getBytes(body)));
+            }
+            case BATCH -> {
+                // A job batched again replaces the earlier batch, as when compaction was interrupted
+                JobReplay job = new JobReplay();
+                jobs.put(getString(body), job);
+                int count = body.getInt();
+                for (int i = 0; i < count; ++i) {
+                    PendingItem item = pending.remove(getString(body));
+                    if (item != null) { job.items.add(item); }
+                }
+            }
+            case PUSH -> {
+                JobReplay job = jobs.get(getString(body));
+                if (job != null) { job.checkpoint = getBytes(body); }
+            }
+            case COMPLETE -> jobs.remove(getString(body));
+            case DROP -> {
+                int count = body.getInt();
+                for (int i = 0; i < count; ++i) {
+                    pending.remove(getString(body));
+                }
+            }
+            default -> throw new IllegalStateException("Unknown journal record type: " + type);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        return new String(getBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    // Record body builder, the type byte followed by the fields
+    private static final class Record {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+
+        Record(byte type) {
+            out.write(type);
+        }
+
+        Record putByte(int value) {
+            out.write(value);
+            return this;
+        }
+
+        Record putInt(int value) {
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+            return this;
+        }
+
+        Record putLong(long value) {
+            putInt((int) (value >>> 32));
+            return putInt((int) value);
+        }
+
+        Record putBytes(byte[] bytes) {
+            putInt(bytes.length);
+            out.writeBytes(bytes);
+            return this;
+        }
+
+        Record putString(String value) {
+            return putBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] bytes() {
+            return out.toByteArray();
+        }
+    }
+}
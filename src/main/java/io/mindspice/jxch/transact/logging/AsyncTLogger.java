@@ -0,0 +1,196 @@
+package io.mindspice.jxch.transact.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+
+/*
+ Wraps a TLogger so job threads only hand events to a preallocated ring buffer, a single consumer thread passes them
+ on to the wrapped logger. A slow sink then only backs up the buffer instead of stalling transaction loops and coin
+ reservation. When the buffer is full events are dropped (DROP) or the logging thread waits for a free slot (BLOCK),
+ dropped events are counted and reported through the wrapped logger once there is room.
+ Lazy messages are built on the calling thread, so they reflect job state at the time they were logged.
+ */
+public class AsyncTLogger implements TLogger, AutoCloseable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    // Slot sequence is its claim position while free and position + 1 once written, the consumer frees it for the
+    // next lap by advancing it to position + capacity
+    private static final class Slot {
+        volatile long sequence;
+        Class<?> clazz;
+        TLogLevel level;
+        String message;
+        Exception ex;
+    }
+
+    private final TLogger delegate;
+    private final OverflowPolicy policy;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread consumer;
+
+    private volatile long head;
+    private volatile boolean consumerParked;
+    private volatile boolean closed;
+    private long droppedReported;
+
+
+    public AsyncTLogger(TLogger delegate) {
+        this(delegate, 8192, OverflowPolicy.DROP);
+    }
+
+    // Capacity is rounded up to a power of two
+    public AsyncTLogger(TLogger delegate, int capacity, OverflowPolicy policy) {
+        if (capacity < 2) { throw new IllegalArgumentException("Capacity must be at least 2"); }
+        this.delegate = delegate;
+        this.policy = policy;
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; ++i) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+        consumer = new Thread(this::consume, "AsyncTLogger");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @Override
+    public void log(Class<?> clazz, TLogLevel TLogLevel, String message) {
+        enqueue(clazz, TLogLevel, message, null);
+    }
+
+    @Override
+    public void log(Class<?> clazz, TLogLevel TLogLevel, String message, Exception ex) {
+        enqueue(clazz, TLogLevel, message, ex);
+    }
+
+    @Override
+    public boolean isEnabled(TLogLevel TLogLevel) {
+        return delegate.isEnabled(TLogLevel);
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // Events waiting for the consumer
+    public int pending() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    // Waits until every event logged before the call has been passed to the wrapped logger
+    public boolean flush(long timeoutMs) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (head < target) {
+            if (System.nanoTime() > deadline || !consumer.isAlive()) { return false; }
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        return true;
+    }
+
+    // Stops accepting events, drains what is buffered and stops the consumer thread
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(consumer);
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void enqueue(Class<?> clazz, TLogLevel level, String message, Exception ex) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        while (true) {
+            long pos = tail.get();
+            Slot slot = slots[(int) pos & mask];
+            long diff = slot.sequence - pos;
+            if (diff == 0) {
+                if (!tail.compareAndSet(pos, pos + 1)) { continue; }
+                slot.clazz = clazz;
+                slot.level = level;
+                slot.message = message;
+                slot.ex = ex;
+                slot.sequence = pos + 1; // Publishes the fields to the consumer
+                if (consumerParked) { LockSupport.unpark(consumer); }
+                return;
+            } else if (diff < 0) { // Full, the slot is a lap behind
+                if (policy == OverflowPolicy.DROP || closed) {
+                    dropped.increment();
+                    return;
+                }
+                LockSupport.unpark(consumer);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            // diff > 0, another producer claimed the position, re-read the tail
+        }
+    }
+
+    private void consume() {
+        long pos = head;
+        while (true) {
+            Slot slot = slots[(int) pos & mask];
+            if (slot.sequence != pos + 1) {
+                if (closed && tail.get() == pos) { break; }
+                reportDropped();
+                consumerParked = true;
+                // Re-check after flagging, so a producer that published before seeing the flag is not missed
+                if (slot.sequence != pos + 1 && !closed) { LockSupport.parkNanos(this, IDLE_PARK_NANOS); }
+                consumerParked = false;
+                continue;
+            }
+            Class<?> clazz = slot.clazz;
+            TLogLevel level = slot.level;
+            String message = slot.message;
+            Exception ex = slot.ex;
+            slot.clazz = null;
+            slot.message = null;
+            slot.ex = null;
+            slot.sequence = pos + slots.length;
+            head = ++pos;
+            deliver(clazz, level, message, ex);
+        }
+        reportDropped();
+    }
+
+    private void deliver(Class<?> clazz, TLogLevel level, String message, Exception ex) {
+        try {
+            if (ex == null) {
+                delegate.log(clazz, level, message);
+            } else {
+                delegate.log(clazz, level, message, ex);
+            }
+        } catch (Exception e) {
+            // A failing sink must not kill the consumer, the event is lost like a dropped one
+            dropped.increment();
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if (total == droppedReported) { return; }
+        long count = total - droppedReported;
+        droppedReported = total;
+        deliver(AsyncTLogger.class, TLogLevel.WARNING, "Log buffer full, dropped " + count + " event(s)" +
+                " | Total Dropped: " + total, null);
+    }
+}
@@ -1,5 +1,7 @@
 package io.mindspice.jxch.transact.logging;
 
+import java.util.function.Supplier;
+
 public interface TLogger {
 
 
@@ -7,4 +9,35 @@ public interface TLogger {
 
     void log(Class<?> clazz, TLogLevel TLogLevel, String message, Exception ex);
 
+    // Override to report the levels your sink discards, the framework skips building messages for them
+    default boolean isEnabled(TLogLevel TLogLevel) {
+        return true;
+    }
+
+    // Message is only built if the level is enabled
+    default void log(Class<?> clazz, TLogLevel TLogLevel, Supplier<String> message) {
+        if (isEnabled(TLogLevel)) { log(clazz, TLogLevel, message.get()); }
+    }
+
+    default void log(Class<?> clazz, TLogLevel TLogLevel, Supplier<String> message, Exception ex) {
+        if (isEnabled(TLogLevel)) { log(clazz, TLogLevel, message.get(), ex); }
+    }
+
+    /*
+     Structured event, fields are alternating keys and values. By default it is logged as a message in the same
+     "Event | Key: Value | Key: Value" form as the framework's other logs, override to pass the fields to a structured
+     sink. Values are only rendered if the level is enabled, the varargs array is still built by the caller.
+     */
+    default void event(Class<?> clazz, TLogLevel TLogLevel, String event, Object... fields) {
+        if (isEnabled(TLogLevel)) { log(clazz, TLogLevel, format(event, fields)); }
+    }
+
+    static String format(String event, Object... fields) {
+        StringBuilder sb = new StringBuilder(event);
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            sb.append(" | ").append(fields[i]).append(": ").append(fields[i + 1]);
+        }
+        return sb.toString();
+    }
+
 }
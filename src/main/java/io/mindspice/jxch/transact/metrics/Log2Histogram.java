@@ -0,0 +1,85 @@
+package io.mindspice.jxch.transact.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/*
+ Lock free histogram of non-negative longs in log2 buckets, each power of two is split into 8 linear sub-buckets so
+ percentiles are within 12.5% of the recorded value. Recording is a few atomic adds and never allocates.
+ Percentiles are read from the bucket midpoints and clamped to the recorded max.
+ */
+public class Log2Histogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+
+    public record Snapshot(long count, double mean, double p50, double p90, double p99, double max) {
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0);
+    }
+
+    public void record(long value) {
+        if (value < 0) { value = 0; }
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    // Values are divided by scale, e.g. 1_000_000 to report nanos as millis
+    public Snapshot snapshot(double scale) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) { return Snapshot.EMPTY; }
+        long maxValue = max.get();
+        return new Snapshot(
+                total,
+                sum.sum() / scale / total,
+                percentile(counts, total, 0.50, maxValue) / scale,
+                percentile(counts, total, 0.90, maxValue) / scale,
+                percentile(counts, total, 0.99, maxValue) / scale,
+                maxValue / scale
+        );
+    }
+
+    private static double percentile(long[] counts, long total, double quantile, long maxValue) {
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank) { return Math.min(midpoint(i), maxValue); }
+        }
+        return maxValue;
+    }
+
+    // Values below SUB_COUNT get their own bucket, above that each power of two spans SUB_COUNT buckets
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) { return (int) value; }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return ((exp - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    static double midpoint(int bucket) {
+        if (bucket < SUB_COUNT) { return bucket; }
+        int exp = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+        int sub = bucket & (SUB_COUNT - 1);
+        double width = Math.pow(2, exp - SUB_BITS);
+        return Math.pow(2, exp) + (sub * width) + (width / 2);
+    }
+}
@@ -0,0 +1,155 @@
+package io.mindspice.jxch.transact.metrics;
+
+import io.mindspice.jxch.transact.util.TClock;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+
+/*
+ Metrics registry, one per service and shared by the jobs it launches. Jobs record phase latencies and outcome counts
+ into fixed arrays indexed by enum ordinal, so recording is a handful of atomic adds and never allocates. Gauges are
+ read from suppliers only when a snapshot is taken. Read with snapshot(), or register the registry with JMX.
+ */
+public class TMetrics implements TMetricsMXBean {
+    private static final double NANOS_PER_MS = 1_000_000;
+
+    // Metrics of jobs run outside a service
+    private static final TMetrics UNREGISTERED = new TMetrics();
+
+    public enum Timer {
+        BUNDLE_BUILD,
+        COST_LOOKUP,
+        FEE_COIN_SELECT,
+        AGGREGATION,
+        PUSH,
+        MEMPOOL_DETECT,
+        CONFIRMATION
+    }
+
+    public enum Counter {
+        JOBS_STARTED,
+        JOBS_SUCCEEDED,
+        JOBS_FAILED,
+        JOB_EXCEPTIONS,
+        RETRIES,
+        DOUBLE_SPENDS,
+        FEE_BUMPS
+    }
+
+    public enum Gauge {
+        QUEUE_DEPTH,
+        IN_FLIGHT_JOBS,
+        PREPARED_JOBS,
+        WATCHED_CONFIRMATIONS
+    }
+
+    public record Snapshot(
+            Map<String, Long> counters,
+            Map<String, Long> gauges,
+            Map<String, Log2Histogram.Snapshot> timers,
+            Log2Histogram.Snapshot finalFeePerCost
+    ) { }
+
+    private final Log2Histogram[] timers = new Log2Histogram[Timer.values().length];
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final IntSupplier[] gauges = new IntSupplier[Gauge.values().length];
+    private final Log2Histogram finalFeePerCost = new Log2Histogram();
+    private volatile ObjectName jmxName;
+
+
+    public TMetrics() {
+        for (int i = 0; i < timers.length; ++i) { timers[i] = new Log2Histogram(); }
+        for (int i = 0; i < counters.length; ++i) { counters[i] = new LongAdder(); }
+    }
+
+    public static TMetrics unregistered() {
+        return UNREGISTERED;
+    }
+
+    public void record(Timer timer, long nanos) {
+        timers[timer.ordinal()].record(nanos);
+    }
+
+    // Records the time since startNanos (from TClock.nanoTime) and returns the current nanoTime
+    public long recordSince(Timer timer, long startNanos) {
+        long now = TClock.nanoTime();
+        timers[timer.ordinal()].record(now - startNanos);
+        return now;
+    }
+
+    public void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public void recordFinalFeePerCost(long feePerCost) {
+        finalFeePerCost.record(feePerCost);
+    }
+
+    public void gauge(Gauge gauge, IntSupplier supplier) {
+        gauges[gauge.ordinal()] = supplier;
+    }
+
+    public long count(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    public Log2Histogram.Snapshot timer(Timer timer) {
+        return timers[timer.ordinal()].snapshot(NANOS_PER_MS);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(getCounters(), getGauges(), getTimers(), getFinalFeePerCost());
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> rtn = new LinkedHashMap<>();
+        for (Counter counter : Counter.values()) { rtn.put(counter.name(), count(counter)); }
+        return rtn;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> rtn = new LinkedHashMap<>();
+        for (Gauge gauge : Gauge.values()) {
+            IntSupplier supplier = gauges[gauge.ordinal()];
+            if (supplier != null) { rtn.put(gauge.name(), (long) supplier.getAsInt()); }
+        }
+        return rtn;
+    }
+
+    @Override
+    public Map<String, Log2Histogram.Snapshot> getTimers() {
+        Map<String, Log2Histogram.Snapshot> rtn = new LinkedHashMap<>();
+        for (Timer timer : Timer.values()) { rtn.put(timer.name(), timer(timer)); }
+        return rtn;
+    }
+
+    @Override
+    public Log2Histogram.Snapshot getFinalFeePerCost() {
+        return finalFeePerCost.snapshot(1);
+    }
+
+    // Registers under io.mindspice.jxch.transact:type=TMetrics,name=<name>, returns false if the name is taken
+    public boolean registerJmx(String name) throws JMException {
+        ObjectName objectName = ObjectName.getInstance("io.mindspice.jxch.transact:type=TMetrics,name=" + ObjectName.quote(name));
+        var server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) { return false; }
+        server.registerMBean(this, objectName);
+        jmxName = objectName;
+        return true;
+    }
+
+    public void unregisterJmx() throws JMException {
+        ObjectName objectName = jmxName;
+        if (objectName == null) { return; }
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        jmxName = null;
+    }
+}
@@ -0,0 +1,16 @@
+package io.mindspice.jxch.transact.metrics;
+
+import java.util.Map;
+
+
+// JMX view of a service's TMetrics, timers are in milliseconds
+public interface TMetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getGauges();
+
+    Map<String, Log2Histogram.Snapshot> getTimers();
+
+    Log2Histogram.Snapshot getFinalFeePerCost();
+}
@@ -0,0 +1,52 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.transact.settings.JobConfig;
+
+
+/*
+ Picks the item count of each job from the bundle cost of past jobs instead of a fixed jobSize. Jobs report the
+ cost of their bundle and item count once built, the sizer keeps an exponentially weighted average of cost per item
+ and sizes the next job to fit within targetBlockFraction of the smaller of maxBlockCost and maxMemPoolCost.
+ The per item average includes the bundle's fixed overhead, so it errs on the side of smaller jobs.
+ Until the first cost is reported jobs use jobSize.
+ */
+public class AdaptiveJobSizer {
+    private static final double ALPHA = 0.3;
+
+    private final JobConfig config;
+    private double costPerItem = -1;
+    private long samples;
+
+
+    public AdaptiveJobSizer(JobConfig config) {
+        this.config = config;
+    }
+
+    public synchronized void record(int items, long bundleCost) {
+        if (items <= 0 || bundleCost <= 0) { return; }
+        double sample = (double) bundleCost / items;
+        costPerItem = costPerItem < 0 ? sample : (ALPHA * sample) + ((1 - ALPHA) * costPerItem);
+        samples++;
+    }
+
+    // Item count for the next job
+    public synchronized int jobSize() {
+        if (costPerItem <= 0) { return Math.max(1, config.jobSize); }
+        long size = (long) (costBudget() / costPerItem);
+        return (int) Math.max(1, Math.min(size, config.adaptiveJobSizeMax));
+    }
+
+    // Max cost a single job's bundle should reach
+    public long costBudget() {
+        long capacity = Math.min(config.maxBlockCost, config.maxMemPoolCost);
+        return (long) (capacity * config.targetBlockFraction);
+    }
+
+    public synchronized double getCostPerItem() {
+        return costPerItem;
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+}
@@ -0,0 +1,156 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.rpc.util.ChiaUtils;
+import io.mindspice.jxch.transact.util.TClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/*
+ Shared repository of coins in use by jobs, prohibiting jobs (and services using the same wallets) from selecting
+ the same coins and causing double spends. Reservations are kept per wallet id and reserved atomically per coin, so
+ jobs never serialize on a global lock and jobs on different wallets never contend. Reads are lock free.
+ Each reservation is a lease owned by a job, a job renews its leases while it runs and releases them when it ends,
+ leases of a job that died without releasing expire and their coins become selectable again. Leases are also indexed
+ by owner, so renewing or releasing a job's leases only touches its own coins.
+ */
+public class CoinReservationManager {
+    private static final CoinReservationManager INSTANCE = new CoinReservationManager();
+    private final Map<Integer, Map<String, Lease>> wallets = new ConcurrentHashMap<>();
+    private final Map<String, Set<Held>> owners = new ConcurrentHashMap<>();
+
+
+    public record Lease(Coin coin, String owner, long expiresAt) {
+        public boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    private record Held(int walletId, String coinId) { }
+
+    public static CoinReservationManager getShared() {
+        return INSTANCE;
+    }
+
+    private Map<String, Lease> wallet(int walletId) {
+        return wallets.computeIfAbsent(walletId, id -> new ConcurrentHashMap<>());
+    }
+
+    // Reserves the coin for the owner, returns false if it is already held by another owner's unexpired lease
+    public boolean reserve(int walletId, Coin coin, String owner, long leaseMs) {
+        Map<String, Lease> leases = wallet(walletId);
+        String coinId = ChiaUtils.getCoinId(coin);
+        long now = TClock.millis();
+        Lease lease = new Lease(coin, owner, now + leaseMs);
+
+        while (true) {
+            Lease existing = leases.putIfAbsent(coinId, lease);
+            if (existing == null) {
+                index(owner, walletId, coinId);
+                return true;
+            }
+            if (!existing.owner().equals(owner) && !existing.isExpired(now)) { return false; }
+            // Own lease or an expired one, swap it only if it has not changed underneath
+            if (leases.replace(coinId, existing, lease)) {
+                if (!existing.owner().equals(owner)) {
+                    unindex(existing.owner(), walletId, coinId);
+                    index(owner, walletId, coinId);
+                }
+                return true;
+            }
+        }
+    }
+
+    // Reserves all or none of the coins
+    public boolean reserveAll(int walletId, List<Coin> coins, String owner, long leaseMs) {
+        List<Coin> reserved = new ArrayList<>(coins.size());
+        for (Coin coin : coins) {
+            if (!reserve(walletId, coin, owner, leaseMs)) {
+                reserved.forEach(c -> release(walletId, c, owner));
+                return false;
+            }
+            reserved.add(coin);
+        }
+        return true;
+    }
+
+    public void release(int walletId, Coin coin, String owner) {
+        String coinId = ChiaUtils.getCoinId(coin);
+        unindex(owner, walletId, coinId);
+        removeLease(walletId, coinId, owner);
+    }
+
+    public void releaseAll(String owner) {
+        Set<Held> held = owners.remove(owner);
+        if (held == null) { return; }
+        for (Held h : held) {
+            removeLease(h.walletId(), h.coinId(), owner);
+        }
+    }
+
+    // Extends every lease held by the owner to leaseMs from now
+    public void renew(String owner, long leaseMs) {
+        Set<Held> held = owners.get(owner);
+        if (held == null) { return; }
+        long expiresAt = TClock.millis() + leaseMs;
+        for (Held h : held) {
+            Map<String, Lease> leases = wallets.get(h.walletId());
+            if (leases == null) { continue; }
+            leases.computeIfPresent(h.coinId(), (id, lease) -> lease.owner().equals(owner)
+                    ? new Lease(lease.coin(), owner, expiresAt)
+                    : lease);
+        }
+    }
+
+    private void removeLease(int walletId, String coinId, String owner) {
+        Map<String, Lease> leases = wallets.get(walletId);
+        if (leases == null) { return; }
+        leases.computeIfPresent(coinId, (id, lease) -> lease.owner().equals(owner) ? null : lease);
+    }
+
+    private void index(String owner, int walletId, String coinId) {
+        owners.compute(owner, (o, held) -> {
+            if (held == null) { held = ConcurrentHashMap.newKeySet(); }
+            held.add(new Held(walletId, coinId));
+            return held;
+        });
+    }
+
+    private void unindex(String owner, int walletId, String coinId) {
+        owners.computeIfPresent(owner, (o, held) -> {
+            held.remove(new Held(walletId, coinId));
+            return held.isEmpty() ? null : held;
+        });
+    }
+
+    public boolean isReserved(int walletId, String coinId) {
+        Map<String, Lease> leases = wallets.get(walletId);
+        if (leases == null) { return false; }
+        Lease lease = leases.get(coinId);
+        return lease != null && !lease.isExpired(TClock.millis());
+    }
+
+    // Coins currently reserved in the wallet, expired leases are dropped along the way
+    public List<Coin> reservedCoins(int walletId) {
+        Map<String, Lease> leases = wallets.get(walletId);
+        if (leases == null) { return List.of(); }
+        long now = TClock.millis();
+        for (var entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (lease.isExpired(now) && leases.remove(entry.getKey(), lease)) {
+                unindex(lease.owner(), walletId, entry.getKey());
+            }
+        }
+        return leases.values().stream().map(Lease::coin).toList();
+    }
+
+    public int size(int walletId) {
+        Map<String, Lease> leases = wallets.get(walletId);
+        return leases == null ? 0 : leases.size();
+    }
+}
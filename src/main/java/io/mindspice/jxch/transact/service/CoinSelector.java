@@ -0,0 +1,17 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+
+import java.util.List;
+
+
+/*
+ Chooses which coins fund a transaction. Every extra input adds CLVM cost, and so fee, to the bundle. Built in
+ strategies are in CoinSelectors, a custom selector can be set on JobConfig.coinSelector.
+ */
+public interface CoinSelector {
+
+    // Candidates are the wallet's available coins ordered largest first, returns the coins to spend, or an empty
+    // list if the target cannot be covered. maxInputs and budgetMs are limits the selector should stay within
+    List<Coin> select(List<Coin> candidates, long target, int maxInputs, long budgetMs);
+}
@@ -0,0 +1,155 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public enum CoinSelectors implements CoinSelector {
+
+    // Largest coins first until the target is covered, the original behaviour
+    LARGEST_FIRST {
+        @Override
+        public List<Coin> select(List<Coin> candidates, long target, int maxInputs, long budgetMs) {
+            return largestFirst(candidates, target);
+        }
+    },
+
+    // Searches for a set of coins summing exactly to the target so no change output is needed, falls back to
+    // MINIMAL_INPUTS if none is found within the time budget
+    BRANCH_AND_BOUND {
+        @Override
+        public List<Coin> select(List<Coin> candidates, long target, int maxInputs, long budgetMs) {
+            List<Coin> exact = branchAndBound(candidates, target, maxInputs, budgetMs);
+            return exact.isEmpty() ? minimalInputs(candidates, target) : exact;
+        }
+    },
+
+    // Fewest possible inputs, choosing the last input so the change is as small as possible
+    MINIMAL_INPUTS {
+        @Override
+        public List<Coin> select(List<Coin> candidates, long target, int maxInputs, long budgetMs) {
+            return minimalInputs(candidates, target);
+        }
+    },
+
+    // Consumes the wallet's smallest coins first, up to maxInputs, then covers the rest with the smallest coin
+    // that fits. Keeps dust from accumulating while bounding the bundle cost
+    FRAGMENTATION_AWARE {
+        @Override
+        public List<Coin> select(List<Coin> candidates, long target, int maxInputs, long budgetMs) {
+            List<Coin> consolidating = fragmentationAware(candidates, target, maxInputs);
+            return consolidating.isEmpty() ? minimalInputs(candidates, target) : consolidating;
+        }
+    };
+
+    private static final int MAX_BNB_TRIES = 100_000;
+
+    static List<Coin> largestFirst(List<Coin> candidates, long target) {
+        long sumNeeded = target;
+        List<Coin> selected = new ArrayList<>();
+        for (Coin coin : candidates) {
+            if (sumNeeded <= 0) { break; }
+            selected.add(coin);
+            sumNeeded -= coin.amount();
+        }
+        return sumNeeded > 0 ? List.of() : selected;
+    }
+
+    static List<Coin> minimalInputs(List<Coin> candidates, long target) {
+        if (target <= 0) { return List.of(); }
+        // The k largest coins are the best possible k coins, so the first k to cover the target is the minimum
+        int k = 0;
+        long sum = 0;
+        while (k < candidates.size() && sum < target) {
+            sum += candidates.get(k++).amount();
+        }
+        if (sum < target) { return List.of(); }
+
+        // Keep the k - 1 largest, replace the last with the smallest remaining coin that still covers the target
+        List<Coin> selected = new ArrayList<>(candidates.subList(0, k - 1));
+        long remaining = target - (sum - candidates.get(k - 1).amount());
+        int last = lastAtLeast(candidates, k - 1, candidates.size() - 1, remaining);
+        selected.add(candidates.get(last));
+        return selected;
+    }
+
+    static List<Coin> fragmentationAware(List<Coin> candidates, long target, int maxInputs) {
+        int n = candidates.size();
+        List<Coin> selected = new ArrayList<>();
+        long sum = 0;
+        int end = n - 1; // Candidates are largest first, so the smallest are taken from the end
+        while (end >= 0 && selected.size() < maxInputs - 1 && sum < target) {
+            Coin coin = candidates.get(end--);
+            selected.add(coin);
+            sum += coin.amount();
+        }
+        if (sum >= target) { return selected; }
+        if (end < 0) { return List.of(); }
+
+        long remaining = target - sum;
+        if (candidates.get(0).amount() < remaining) { return List.of(); }
+        selected.add(candidates.get(lastAtLeast(candidates, 0, end, remaining)));
+        return selected;
+    }
+
+    // Depth first include/exclude search over the coins ordered largest first, pruning branches that overshoot,
+    // can no longer reach the target or exceed maxInputs
+    static List<Coin> branchAndBound(List<Coin> candidates, long target, int maxInputs, long budgetMs) {
+        int n = candidates.size();
+        long[] values = new long[n];
+        long[] suffix = new long[n + 1];
+        for (int i = n - 1; i >= 0; --i) {
+            values[i] = candidates.get(i).amount();
+            suffix[i] = suffix[i + 1] + values[i];
+        }
+        if (suffix[0] < target) { return List.of(); }
+
+        long deadline = System.nanoTime() + budgetMs * 1_000_000L;
+        int[] included = new int[Math.min(n, Math.max(1, maxInputs))];
+        int depth = 0;
+        int i = 0;
+        long sum = 0;
+
+        for (int tries = 0; tries < MAX_BNB_TRIES; ++tries) {
+            if ((tries & 1023) == 0 && System.nanoTime() > deadline) { break; }
+            if (sum == target) {
+                List<Coin> selected = new ArrayList<>(depth);
+                for (int d = 0; d < depth; ++d) { selected.add(candidates.get(included[d])); }
+                return selected;
+            }
+
+            boolean backtrack = sum > target || i >= n || sum + suffix[i] < target || depth >= included.length;
+            if (!backtrack) {
+                included[depth++] = i;
+                sum += values[i++];
+                continue;
+            }
+
+            if (depth == 0) { break; } // Search space exhausted
+            int last = included[--depth];
+            sum -= values[last];
+            i = last + 1;
+            // Excluding a coin then including an equal one would repeat the branch just searched
+            while (i < n && values[i] == values[last]) { i++; }
+        }
+        return List.of();
+    }
+
+    // Index of the smallest coin in [from, to] with an amount >= minAmount, coins ordered largest first and
+    // candidates[from] must satisfy it
+    private static int lastAtLeast(List<Coin> candidates, int from, int to, long minAmount) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (candidates.get(mid).amount() >= minAmount) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+}
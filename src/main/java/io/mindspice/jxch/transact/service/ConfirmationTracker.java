@@ -0,0 +1,116 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.rpc.http.FullNodeAPI;
+import io.mindspice.jxch.rpc.schemas.object.CoinRecord;
+import io.mindspice.jxch.rpc.util.ChiaUtils;
+import io.mindspice.jxch.rpc.util.RPCException;
+import io.mindspice.jxch.transact.util.TClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/*
+ Shared confirmation watcher, one per FullNodeAPI. Jobs awaiting confirmation register the coin their bundle spends,
+ the tracker polls the node's peak height and on each new block looks up every watched coin in one batched
+ get_coin_records_by_names call. Jobs only read the result, so confirmation is seen right after the block that
+ includes it and the node sees one peak poll per interval plus one lookup per block, regardless of job count.
+ Polling is lazy on read like MempoolSnapshot, concurrent callers wait on a single refresh.
+ */
+public class ConfirmationTracker {
+    private static final Map<FullNodeAPI, ConfirmationTracker> TRACKERS = new ConcurrentHashMap<>();
+    private static final int LOOKUP_BATCH_SIZE = 500;
+    private static final long STALE_WATCH_MS = 600_000;
+
+    private final FullNodeAPI nodeAPI;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final Map<String, Watch> watched = new ConcurrentHashMap<>();
+    private volatile int peakHeight = -1;
+    private volatile long lastPoll;
+
+
+    private static final class Watch {
+        volatile int spentHeight = -1;
+        volatile long lastRead = TClock.millis();
+    }
+
+    private ConfirmationTracker(FullNodeAPI nodeAPI) {
+        this.nodeAPI = nodeAPI;
+    }
+
+    public static ConfirmationTracker forNode(FullNodeAPI nodeAPI) {
+        return TRACKERS.computeIfAbsent(nodeAPI, ConfirmationTracker::new);
+    }
+
+    public void watch(String coinId) {
+        watched.computeIfAbsent(coinId, id -> new Watch()).lastRead = TClock.millis();
+    }
+
+    public void unwatch(String coinId) {
+        watched.remove(coinId);
+    }
+
+    // Height of the block the coin was spent in, -1 if it is not spent as of the last poll or not watched
+    public int spentHeight(String coinId) {
+        Watch watch = watched.get(coinId);
+        if (watch == null) { return -1; }
+        watch.lastRead = TClock.millis();
+        return watch.spentHeight;
+    }
+
+    public boolean isSpent(String coinId) {
+        return spentHeight(coinId) >= 0;
+    }
+
+    public int peakHeight() {
+        return peakHeight;
+    }
+
+    public int watchedCount() {
+        return watched.size();
+    }
+
+    // Polls the peak if the last poll is older than maxAgeMs, watched coins are looked up when the peak has moved
+    public void refresh(long maxAgeMs) throws RPCException {
+        if (TClock.millis() - lastPoll <= maxAgeMs) { return; }
+        refreshLock.lock();
+        try {
+            // Another caller may have polled while this one waited on the lock
+            if (TClock.millis() - lastPoll <= maxAgeMs) { return; }
+            poll();
+        } finally {
+            lastPoll = TClock.millis();
+            refreshLock.unlock();
+        }
+    }
+
+    private void poll() throws RPCException {
+        var peak = nodeAPI.getBlockchainState().data()
+                .orElseThrow(TJob.dataExcept("NodeAPI.getBlockchainState")).peak();
+        if (peak == null || peak.height() == peakHeight) { return; }
+
+        // Watches of jobs that ended without unwatching are dropped once nothing has read them for a while
+        long now = TClock.millis();
+        watched.values().removeIf(watch -> now - watch.lastRead > STALE_WATCH_MS);
+
+        List<String> pending = new ArrayList<>();
+        watched.forEach((coinId, watch) -> {
+            if (watch.spentHeight < 0) { pending.add(coinId); }
+        });
+        for (int i = 0; i < pending.size(); i += LOOKUP_BATCH_SIZE) {
+            List<String> batch = pending.subList(i, Math.min(i + LOOKUP_BATCH_SIZE, pending.size()));
+            List<CoinRecord> records = nodeAPI.getCoinRecordsByNames(batch, true).data()
+                    .orElseThrow(TJob.dataExcept("NodeAPI.getCoinRecordsByNames"));
+            for (CoinRecord record : records) {
+                if (!record.spent()) { continue; }
+                Watch watch = watched.get(ChiaUtils.getCoinId(record.coin()));
+                if (watch != null) { watch.spentHeight = record.spentBlockIndex(); }
+            }
+        }
+        // Only advanced once all lookups succeeded, so a failed poll is retried for the same block
+        peakHeight = peak.height();
+    }
+}
@@ -0,0 +1,251 @@
+package io.mindspice.jxch.transact.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.mindspice.jxch.rpc.http.FullNodeAPI;
+import io.mindspice.jxch.rpc.http.WalletAPI;
+import io.mindspice.jxch.rpc.schemas.ApiResponse;
+import io.mindspice.jxch.rpc.schemas.fullnode.SpendBundleStatus;
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
+import io.mindspice.jxch.rpc.schemas.wallet.SignedTransaction;
+import io.mindspice.jxch.rpc.util.ChiaUtils;
+import io.mindspice.jxch.rpc.util.RPCException;
+import io.mindspice.jxch.rpc.util.RequestUtils;
+import io.mindspice.jxch.transact.logging.TLogLevel;
+import io.mindspice.jxch.transact.logging.TLogger;
+import io.mindspice.jxch.transact.settings.JobConfig;
+import io.mindspice.jxch.transact.util.TClock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/*
+ Keeps a pool of right sized fee coins in the fee wallet so concurrent jobs do not contend for the same few large
+ coins. When the number of unreserved pool coins falls below feeCoinPoolLowWater, the largest coin in the wallet is
+ split into enough coins of feeCoinAmount to bring the pool back up to feeCoinPoolSize. Split outputs are added to
+ the fee wallet's WalletCoinIndex once confirmed, where getFeeCoin picks them up as the smallest covering coin.
+ Pool coins are feeCoinAmount + i mojos, as identical outputs of the same parent would share a coin id.
+ One split is in flight at a time, maintenance runs on the service executor and never blocks a job. A split that
+ leaves the mempool unconfirmed, or is never seen in it, is abandoned and its source released so the next pass
+ can split again.
+ */
+public class FeeCoinPool {
+    private static final Map<WalletAPI, Map<Integer, FeeCoinPool>> POOLS = new ConcurrentHashMap<>();
+    private static final AtomicInteger POOL_IDS = new AtomicInteger();
+    // How long a pushed split may go unseen in the mempool before it is taken as dropped
+    private static final long SPLIT_DETECT_MS = 60_000;
+
+    private final WalletAPI walletAPI;
+    private final int walletId;
+    // Reservation owner, unique per pool so one pool never releases another's split source
+    private final String owner;
+    private final AtomicBoolean maintaining = new AtomicBoolean(false);
+
+    private volatile FullNodeAPI nodeAPI;
+    private volatile JobConfig config;
+    private volatile TLogger tLogger;
+    private volatile Executor executor;
+
+    // Split awaiting confirmation
+    private volatile Coin splitSource;
+    private volatile List<Coin> pendingCoins;
+    private volatile String splitBundleName;
+    private volatile long splitPushedAt;
+    private volatile boolean splitSeen;
+
+    private FeeCoinPool(WalletAPI walletAPI, int walletId) {
+        this.walletAPI = walletAPI;
+        this.walletId = walletId;
+        this.owner = "FeeCoinPool-" + POOL_IDS.incrementAndGet() + "-" + walletId;
+    }
+
+    public static FeeCoinPool forWallet(WalletAPI walletAPI, int walletId) {
+        return POOLS.computeIfAbsent(walletAPI, api -> new ConcurrentHashMap<>())
+                .computeIfAbsent(walletId, id -> new FeeCoinPool(walletAPI, id));
+    }
+
+    // Enables maintenance using the service's apis, config and executor, a no-op if feeCoinPoolSize is 0
+    public void attach(FullNodeAPI nodeAPI, JobConfig config, TLogger tLogger, Executor executor) {
+        if (config.feeCoinPoolSize <= 0) { return; }
+        this.nodeAPI = nodeAPI;
+        this.config = config;
+        this.tLogger = tLogger;
+        this.executor = executor;
+    }
+
+    public boolean isEnabled() {
+        JobConfig cfg = config;
+        return cfg != null && cfg.feeCoinPoolSize > 0 && cfg.feeCoinAmount > 0;
+    }
+
+    // Schedules a maintenance pass if the pool is enabled and one is not already running, safe to call often
+    public void maintain() {
+        if (!isEnabled() || !maintaining.compareAndSet(false, true)) { return; }
+        try {
+            executor.execute(() -> {
+                try {
+                    runMaintenance();
+                } catch (Exception e) {
+                    tLogger.log(this.getClass(), TLogLevel.ERROR, () -> "FeeCoinPool | Wallet: " + walletId +
+                            " | Maintenance failed", e);
+                } finally {
+                    maintaining.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            maintaining.set(false);
+        }
+    }
+
+    // Unreserved pool coins currently in the fee wallet index
+    public int available() {
+        JobConfig cfg = config;
+        if (cfg == null) { return 0; }
+        CoinReservationManager reservations = CoinReservationManager.getShared();
+        long maxAmount = cfg.feeCoinAmount + cfg.feeCoinPoolSize;
+        int count = 0;
+        for (Coin coin : WalletCoinIndex.forWallet(walletAPI, walletId).ascendingFrom(cfg.feeCoinAmount)) {
+            if (coin.amount() >= maxAmount) { break; }
+            if (!reservations.isReserved(walletId, ChiaUtils.getCoinId(coin))) { count++; }
+        }
+        return count;
+    }
+
+    public boolean isSplitPending() {
+        return pendingCoins != null;
+    }
+
+    private void runMaintenance() throws Exception {
+        WalletCoinIndex index = WalletCoinIndex.forWallet(walletAPI, walletId)
+                .ensureFresh(config.coinIndexResyncSec * 1000L);
+        if (pendingCoins != null) {
+            checkPendingSplit(index);
+            return;
+        }
+
+        int available = available();
+        if (available >= config.feeCoinPoolLowWater || available >= config.feeCoinPoolSize) { return; }
+        split(index, config.feeCoinPoolSize - available);
+    }
+
+    private void checkPendingSplit(WalletCoinIndex index) throws RPCException {
+        CoinReservationManager reservations = CoinReservationManager.getShared();
+        long leaseMs = config.coinLeaseSec * 1000L;
+        if (isSplitConfirmed()) {
+            index.markSpent(splitSource);
+            pendingCoins.forEach(index::add);
+            tLogger.log(this.getClass(), TLogLevel.INFO, () -> "FeeCoinPool | Wallet: " + walletId +
+                    " | Split confirmed | Coins Added: " + pendingCoins.size());
+        } else if (isSplitDropped()) {
+            tLogger.log(this.getClass(), TLogLevel.WARNING, () -> "FeeCoinPool | Wallet: " + walletId +
+                    " | Split " + splitBundleName + " left the mempool unconfirmed, abandoning split");
+        } else if (reservations.reserve(walletId, splitSource, owner, leaseMs)) {
+            return; // Still waiting, the source stays reserved while the split is outstanding
+        } else {
+            tLogger.log(this.getClass(), TLogLevel.WARNING, () -> "FeeCoinPool | Wallet: " + walletId +
+                    " | Split source was taken by another owner, abandoning split");
+        }
+        reservations.release(walletId, splitSource, owner);
+        pendingCoins = null;
+        splitSource = null;
+        splitBundleName = null;
+    }
+
+    private boolean isSplitConfirmed() throws RPCException {
+        return nodeAPI.getCoinRecordByName(ChiaUtils.getCoinId(pendingCoins.get(0))).data().isPresent();
+    }
+
+    // Gone from a mempool view taken after it was seen there, or never seen within SPLIT_DETECT_MS of the push.
+    // The coin is checked again as the split may have confirmed between the two reads
+    private boolean isSplitDropped() throws RPCException {
+        MempoolSnapshot.View view = MempoolSnapshot.forNode(nodeAPI).get(config.mempoolRefreshInterval);
+        if (view.contains(splitBundleName)) {
+            splitSeen = true;
+            return false;
+        }
+        if (!splitSeen && view.timestamp() - splitPushedAt < SPLIT_DETECT_MS) { return false; }
+        return !isSplitConfirmed();
+    }
+
+    private void split(WalletCoinIndex index, int needed) throws Exception {
+        CoinReservationManager reservations = CoinReservationManager.getShared();
+        long leaseMs = config.coinLeaseSec * 1000L;
+        // One coin's worth is held back from the split to cover its own fee
+        long perCoin = config.feeCoinAmount + config.feeCoinPoolSize;
+
+        Coin source = null;
+        for (Coin coin : index.descending()) {
+            if (coin.amount() < perCoin * 2) { break; }
+            if (reservations.reserve(walletId, coin, owner, leaseMs)) {
+                source = coin;
+                break;
+            }
+        }
+        if (source == null) {
+            tLogger.log(this.getClass(), TLogLevel.WARNING, () -> "FeeCoinPool | Wallet: " + walletId +
+                    " | Pool below low water mark, but no unreserved coin large enough to split");
+            return;
+        }
+
+        int count = (int) Math.min(needed, source.amount() / perCoin - 1);
+        long splitTotal = 0;
+        var builder = new RequestUtils.SignedTransactionBuilder().addCoin(source);
+        for (int i = 0; i < count; ++i) {
+            builder.addAddition(config.changeTarget, config.feeCoinAmount + i);
+            splitTotal += config.feeCoinAmount + i;
+        }
+
+        SignedTransaction signedTx;
+        long fee;
+        ApiResponse<SpendBundleStatus> pushResponse;
+        try {
+            signedTx = createSplit(builder.build());
+            fee = getSplitFee(signedTx.spendBundle(), source.amount() - splitTotal);
+            if (fee > 0) { signedTx = createSplit(builder.addFee(fee).build()); }
+            pushResponse = nodeAPI.pushTx(signedTx.spendBundle());
+        } catch (Exception e) {
+            reservations.release(walletId, source, owner);
+            throw e;
+        }
+        if (!pushResponse.success()) {
+            reservations.release(walletId, source, owner);
+            tLogger.log(this.getClass(), TLogLevel.WARNING, () -> "FeeCoinPool | Wallet: " + walletId +
+                    " | Failed to push split | Error: " + pushResponse.error());
+            return;
+        }
+
+        splitSource = source;
+        splitBundleName = pushResponse.data().orElseThrow(TJob.dataExcept("pushResponse")).spendBundleName();
+        splitPushedAt = TClock.millis();
+        splitSeen = false;
+        pendingCoins = signedTx.additions().stream()
+                .filter(c -> c.amount() >= config.feeCoinAmount && c.amount() < perCoin)
+                .toList();
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "FeeCoinPool | Wallet: " + walletId +
+                " | Split pushed | Source Coin: " + ChiaUtils.getCoinId(splitSource) +
+                " | Coins: " + count + " | Fee: " + fee);
+    }
+
+    private SignedTransaction createSplit(JsonNode request) throws RPCException {
+        return walletAPI.createSignedTransaction(request).data()
+                .orElseThrow(TJob.dataExcept("WalletAPI.createSignedTransaction"));
+    }
+
+    // Same fee calculation jobs use, a fee is only attached if the split would not fit in the mempool
+    private long getSplitFee(SpendBundle splitBundle, long maxFee) throws Exception {
+        long cost = nodeAPI.getSpendBundleInclusionCost(splitBundle).data()
+                .orElseThrow(TJob.dataExcept("NodeApi.getSpendBundleInclusionCost")).cost();
+        MempoolSnapshot mempool = MempoolSnapshot.forNode(nodeAPI);
+        if (mempool.get(config.mempoolRefreshInterval).totalCost() + cost < config.maxMemPoolCost) { return 0; }
+
+        long feePerCost = mempool.feeRates().feePerCostToDisplace((long) Math.ceil(cost * 1.05));
+        feePerCost = Math.min(Math.max(Math.max(feePerCost, 5), config.minFeePerCost), config.maxFeePerCost);
+        return Math.min(feePerCost * cost, maxFee);
+    }
+}
@@ -0,0 +1,154 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.rpc.schemas.object.MempoolItem;
+
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/*
+ Order statistics over the fee paying items of the mempool keyed by fee per cost. Item cost is accumulated into a
+ Fenwick tree with one bucket per whole fee per cost value, so both updates and "what fee per cost is needed to
+ displace X cost" queries are O(log n) in the bucket count with no sorting or allocation.
+ Fee per cost values at or above MAX_FEE_PER_COST share the last bucket.
+ */
+public class FeeRateIndex {
+    public static final int MAX_FEE_PER_COST = (1 << 16) - 1;
+    private static final int BUCKETS = MAX_FEE_PER_COST + 1;
+
+    private final long[] costTree = new long[BUCKETS + 1]; // 1-based, bucket i holds fee per cost i - 1
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long totalCost;
+    private int size;
+
+    public void add(long fee, long cost) {
+        if (fee <= 0 || cost <= 0) { return; }
+        lock.writeLock().lock();
+        try {
+            update(bucket(fee, cost), cost);
+            totalCost += cost;
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long fee, long cost) {
+        if (fee <= 0 || cost <= 0) { return; }
+        lock.writeLock().lock();
+        try {
+            update(bucket(fee, cost), -cost);
+            totalCost -= cost;
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Applies the difference between two mempool states keyed by spend bundle name, a bundle name always maps
+    // to the same bundle so only additions and removals need to be considered
+    public void applyDiff(Map<String, MempoolItem> previous, Map<String, MempoolItem> current) {
+        lock.writeLock().lock();
+        try {
+            for (var entry : previous.entrySet()) {
+                if (!current.containsKey(entry.getKey())) {
+                    MempoolItem item = entry.getValue();
+                    remove(item.fee(), item.cost());
+                }
+            }
+            for (var entry : current.entrySet()) {
+                if (!previous.containsKey(entry.getKey())) {
+                    MempoolItem item = entry.getValue();
+                    add(item.fee(), item.cost());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long totalCost() {
+        lock.readLock().lock();
+        try {
+            return totalCost;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Walking the fee paying items from the lowest fee per cost up, returns the fee per cost of the item at which
+    // their accumulated cost reaches targetCost, or the highest fee per cost present if the whole mempool is less
+    public long feePerCostToDisplace(long targetCost) {
+        lock.readLock().lock();
+        try {
+            if (totalCost <= 0) { return 0; }
+            return lowerBound(Math.max(1, Math.min(targetCost, totalCost))) - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Fee per cost below which the given fraction of the fee paying cost sits, 0.9 is the rate only the top
+    // tenth of the mempool by cost pays more than
+    public long feePerCostAtPercentile(double percentile) {
+        lock.readLock().lock();
+        try {
+            if (totalCost <= 0) { return 0; }
+            return lowerBound(Math.max(1, Math.min((long) Math.ceil(totalCost * percentile), totalCost))) - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Cost of the fee paying items paying more than feePerCost, what a block fills with before such a bundle
+    public long costAbove(long feePerCost) {
+        lock.readLock().lock();
+        try {
+            if (feePerCost >= MAX_FEE_PER_COST) { return 0; }
+            return totalCost - prefixSum((int) Math.max(0, feePerCost) + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int bucket(long fee, long cost) {
+        return (int) Math.min(fee / cost, MAX_FEE_PER_COST) + 1;
+    }
+
+    private void update(int index, long delta) {
+        for (int i = index; i <= BUCKETS; i += i & -i) {
+            costTree[i] += delta;
+        }
+    }
+
+    private long prefixSum(int index) {
+        long sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += costTree[i];
+        }
+        return sum;
+    }
+
+    // Smallest index whose prefix sum is >= target, target must be within (0, totalCost]
+    private int lowerBound(long target) {
+        int pos = 0;
+        long remaining = target;
+        for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= BUCKETS && costTree[next] < remaining) {
+                pos = next;
+                remaining -= costTree[next];
+            }
+        }
+        return pos + 1;
+    }
+}
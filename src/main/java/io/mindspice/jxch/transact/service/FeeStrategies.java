@@ -0,0 +1,122 @@
+package io.mindspice.jxch.transact.service;
+
+
+public enum FeeStrategies implements FeeStrategy {
+
+    // The original behaviour: no fee until the mempool is full, then enough to displace the bundle's cost. Retries
+    // add 1 to the fee per cost every feeIncInterval iterations, a replace after maxConfirmWait adds 5
+    LEGACY {
+        @Override
+        public long initialFeePerCost(Context ctx) {
+            long feePerCost = ctx.displaceFeePerCost();
+            if (feePerCost > 0) { feePerCost = Math.max(feePerCost, Math.max(5, ctx.config().minFeePerCost)); }
+            return Math.max(feePerCost, ctx.floorFeePerCost());
+        }
+
+        @Override
+        public long retryFeePerCost(Context ctx) {
+            if (ctx.needReplaceFee()) { return ctx.feePerCost() + 5; }
+            if (ctx.iteration() % ctx.config().feeIncInterval != 0) { return ctx.feePerCost(); }
+            return Math.max(ctx.displaceFeePerCost(), ctx.baseFeePerCost())
+                    + ctx.iteration() / ctx.config().feeIncInterval;
+        }
+    },
+
+    // Pays the lower of what puts the bundle in the next block and the feePercentile fee per cost of the mempool's
+    // fee paying cost, nothing if the whole mempool fits in the next block. Re-priced on every retry, and a bundle
+    // that has waited feeReplaceWaitSec without making the next block is replaced once the target has risen past it
+    MEMPOOL_PERCENTILE {
+        @Override
+        public long initialFeePerCost(Context ctx) {
+            return percentileTarget(ctx);
+        }
+
+        @Override
+        public long retryFeePerCost(Context ctx) {
+            return replaceable(ctx, percentileTarget(ctx));
+        }
+
+        @Override
+        public boolean shouldReplace(Context ctx) {
+            return LEGACY.shouldReplace(ctx)
+                    || (stuck(ctx) && percentileTarget(ctx) >= ctx.minReplaceFeePerCost());
+        }
+    },
+
+    // Starts as LEGACY, then multiplies the fee per cost by feeBumpFactor on each retry or replace that is not
+    // already headed for the next block, by at least the node's replace by fee minimum
+    EXPONENTIAL_RBF {
+        @Override
+        public long initialFeePerCost(Context ctx) {
+            return LEGACY.initialFeePerCost(ctx);
+        }
+
+        @Override
+        public long retryFeePerCost(Context ctx) {
+            if (!ctx.needReplaceFee() && ctx.inNextBlock()) {
+                return Math.max(ctx.feePerCost(), ctx.displaceFeePerCost());
+            }
+            long base = ctx.baseFeePerCost();
+            if (ctx.feePerCost() < base) { return Math.max(base, ctx.displaceFeePerCost()); }
+            long bumped = (long) Math.ceil(ctx.feePerCost() * ctx.config().feeBumpFactor);
+            return Math.max(Math.max(bumped, ctx.minReplaceFeePerCost()), ctx.displaceFeePerCost());
+        }
+
+        @Override
+        public boolean shouldReplace(Context ctx) {
+            return LEGACY.shouldReplace(ctx) || stuck(ctx);
+        }
+    },
+
+    // MEMPOOL_PERCENTILE, escalated linearly from the mempool target to maxFeePerCost over the time between the job
+    // starting and its earliest item deadline, or feeDeadlineSec after starting for jobs without one. Escalation
+    // only applies while the bundle would not fit in the next block anyway
+    DEADLINE_AWARE {
+        @Override
+        public long initialFeePerCost(Context ctx) {
+            return deadlineTarget(ctx);
+        }
+
+        @Override
+        public long retryFeePerCost(Context ctx) {
+            return replaceable(ctx, deadlineTarget(ctx));
+        }
+
+        @Override
+        public boolean shouldReplace(Context ctx) {
+            return LEGACY.shouldReplace(ctx)
+                    || (stuck(ctx) && deadlineTarget(ctx) >= ctx.minReplaceFeePerCost());
+        }
+    };
+
+    static long percentileTarget(Context ctx) {
+        if (ctx.fitsNextBlock()) { return ctx.floorFeePerCost(); }
+        FeeRateIndex feeRates = ctx.feeRates();
+        long feeCost = feeRates.totalCost();
+        long room = Math.max(0, ctx.config().maxBlockCost - ctx.bundleCost());
+        // Just above the fee paying cost that does not fit in the block alongside the bundle
+        long nextBlock = feeCost <= room ? 0 : feeRates.feePerCostToDisplace(feeCost - room) + 1;
+        long percentile = feeRates.feePerCostAtPercentile(ctx.config().feePercentile) + 1;
+        return Math.max(Math.max(Math.min(nextBlock, percentile), ctx.baseFeePerCost()), ctx.displaceFeePerCost());
+    }
+
+    static long deadlineTarget(Context ctx) {
+        long target = percentileTarget(ctx);
+        if (ctx.fitsNextBlock()) { return target; }
+        long deadline = ctx.hasDeadline() ? ctx.deadline() : ctx.startedAt() + ctx.config().feeDeadlineSec * 1000L;
+        long window = deadline - ctx.startedAt();
+        double progress = window <= 0 ? 1 : Math.min(1, Math.max(0, (double) (ctx.now() - ctx.startedAt()) / window));
+        long max = ctx.config().maxFeePerCost;
+        return target >= max ? target : target + (long) Math.ceil((max - target) * progress);
+    }
+
+    // A replacement has to outbid the bundle it replaces
+    static long replaceable(Context ctx, long target) {
+        return ctx.needReplaceFee() ? Math.max(target, ctx.minReplaceFeePerCost()) : target;
+    }
+
+    // Waited feeReplaceWaitSec in the mempool and still outbid for the next block
+    static boolean stuck(Context ctx) {
+        return ctx.confirmWaitSec() >= ctx.config().feeReplaceWaitSec && !ctx.inNextBlock();
+    }
+}
@@ -0,0 +1,84 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.transact.settings.JobConfig;
+
+
+/*
+ Decides the fee per cost a job pays. Asked once when the job's bundle is built, again on every retry, and while the
+ bundle waits in the mempool whether it should be replaced. Results are capped at maxFeePerCost and rounded up to the
+ job's fee ladder if it has one. Built in strategies are in FeeStrategies, a custom strategy can be set on
+ JobConfig.feeStrategy.
+ */
+public interface FeeStrategy {
+
+    // Fee per cost of the job's first push
+    long initialFeePerCost(Context ctx);
+
+    // Fee per cost of a retry, returning the current fee per cost re-pushes the same bundle
+    long retryFeePerCost(Context ctx);
+
+    // Checked on each confirmation poll, true re-pushes the bundle at retryFeePerCost with needReplaceFee set.
+    // By default after maxConfirmWait seconds, if one is configured
+    default boolean shouldReplace(Context ctx) {
+        return ctx.config().maxConfirmWait > 0 && ctx.confirmWaitSec() > ctx.config().maxConfirmWait;
+    }
+
+
+    // What a strategy knows about the job and the mempool. Fee per costs are in mojos per cost of the job's bundle,
+    // times are epoch ms. confirmWaitSec is -1 unless the bundle is waiting in the mempool
+    record Context(
+            JobConfig config,
+            long bundleCost,
+            long feePerCost,
+            int iteration,
+            boolean needReplaceFee,
+            long floorFeePerCost,
+            long startedAt,
+            long deadline,
+            long confirmWaitSec,
+            long mempoolCost,
+            FeeRateIndex feeRates,
+            long now
+    ) {
+        // Smallest fee increase the node accepts to replace a bundle already in the mempool
+        public static final long MIN_REPLACE_FEE_INCREASE = 10_000_000;
+        // Lowest non zero fee per cost the node accepts
+        public static final long MIN_NON_ZERO_FEE_PER_COST = 5;
+
+        // Lowest fee per cost worth paying once a fee is needed at all
+        public long baseFeePerCost() {
+            return Math.max(Math.max(MIN_NON_ZERO_FEE_PER_COST, config.minFeePerCost), floorFeePerCost);
+        }
+
+        // Fee per cost needed to get into a full mempool by evicting cheaper items, 0 if the bundle fits. Includes
+        // a 5% buffer for the bundle
+        public long displaceFeePerCost() {
+            long bufferedCost = (long) Math.ceil(bundleCost * 1.05);
+            return mempoolCost + bufferedCost > config.maxMemPoolCost
+                    ? feeRates.feePerCostToDisplace(bufferedCost)
+                    : 0;
+        }
+
+        // Lowest fee per cost that replaces the bundle at the current fee per cost, it must pay strictly more per
+        // cost and at least MIN_REPLACE_FEE_INCREASE more in total
+        public long minReplaceFeePerCost() {
+            long increase = (MIN_REPLACE_FEE_INCREASE + bundleCost - 1) / Math.max(1, bundleCost);
+            return feePerCost + Math.max(1, increase);
+        }
+
+        // Whether the whole mempool and the bundle fit in one block, so no fee is needed to be included next
+        public boolean fitsNextBlock() {
+            return mempoolCost + bundleCost <= config.maxBlockCost;
+        }
+
+        // Whether the fee paying cost ahead of the bundle at the current fee per cost still leaves it room in
+        // the next block
+        public boolean inNextBlock() {
+            return fitsNextBlock() || feeRates.costAbove(feePerCost) + bundleCost <= config.maxBlockCost;
+        }
+
+        public boolean hasDeadline() {
+            return deadline != PriorityLaneQueue.NO_DEADLINE;
+        }
+    }
+}
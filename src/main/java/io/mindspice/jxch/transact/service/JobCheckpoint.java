@@ -0,0 +1,72 @@
+package io.mindspice.jxch.transact.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+
+/*
+ A job's TransactionState as journaled before each push, along with what the job needs to report its result
+ (minted NFT ids or created coins), so a job can be resumed at confirmation after a restart.
+ */
+public record JobCheckpoint(
+        List<String> itemIds,
+        long bundleCost,
+        long feePerCost,
+        long feeAmount,
+        Coin feeCoin,
+        SpendBundle transactionBundle,
+        SpendBundle aggBundle,
+        List<Coin> jobCoins,
+        int iteration,
+        List<String> nftIds,
+        List<Coin> createdCoins,
+        boolean feeCoinPushed
+) {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public static JobCheckpoint of(TransactionState tState, int iteration) {
+        return new JobCheckpoint(tState.itemIds, tState.bundleCost, tState.feePerCost, tState.feeAmount,
+                tState.feeCoin, tState.transactionBundle, tState.aggBundle, tState.jobCoins, iteration, null, null,
+                tState.feeCoinPushed);
+    }
+
+    public JobCheckpoint withNftIds(List<String> nftIds) {
+        return new JobCheckpoint(itemIds, bundleCost, feePerCost, feeAmount, feeCoin, transactionBundle, aggBundle,
+                jobCoins, iteration, nftIds, createdCoins, feeCoinPushed);
+    }
+
+    public JobCheckpoint withCreatedCoins(List<Coin> createdCoins) {
+        return new JobCheckpoint(itemIds, bundleCost, feePerCost, feeAmount, feeCoin, transactionBundle, aggBundle,
+                jobCoins, iteration, nftIds, createdCoins, feeCoinPushed);
+    }
+
+    public TransactionState toState() {
+        TransactionState tState = new TransactionState(itemIds, bundleCost, feePerCost, feeAmount, feeCoin,
+                transactionBundle, aggBundle, jobCoins);
+        tState.feeCoinPushed = feeCoinPushed;
+        return tState;
+    }
+
+    public byte[] toBytes() {
+        try {
+            return MAPPER.writeValueAsBytes(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static JobCheckpoint fromBytes(byte[] bytes) {
+        try {
+            return MAPPER.readValue(bytes, JobCheckpoint.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.rpc.http.FullNodeAPI;
+import io.mindspice.jxch.rpc.schemas.object.MempoolItem;
+import io.mindspice.jxch.rpc.util.RPCException;
+import io.mindspice.jxch.transact.util.TClock;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/*
+ Shared, periodically refreshed copy of a node's mempool. All jobs using the same FullNodeAPI read from the same
+ snapshot, so the full mempool is only fetched once per refresh interval no matter how many jobs are in flight.
+ Refreshes happen lazily on read by whichever caller first sees a stale view, concurrent callers wait on that
+ refresh instead of issuing their own.
+ */
+public class MempoolSnapshot {
+    private static final Map<FullNodeAPI, MempoolSnapshot> SNAPSHOTS = new ConcurrentHashMap<>();
+
+    private final FullNodeAPI nodeAPI;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final FeeRateIndex feeRates = new FeeRateIndex();
+    private volatile View view = View.EMPTY;
+
+
+    public record View(
+            Map<String, MempoolItem> byBundleName,
+            long totalCost,
+            long timestamp
+    ) {
+        static final View EMPTY = new View(Map.of(), 0, 0);
+
+        public boolean contains(String spendBundleName) {
+            return byBundleName.containsKey(spendBundleName);
+        }
+
+        public Collection<MempoolItem> items() {
+            return byBundleName.values();
+        }
+    }
+
+    private MempoolSnapshot(FullNodeAPI nodeAPI) {
+        this.nodeAPI = nodeAPI;
+    }
+
+    public static MempoolSnapshot forNode(FullNodeAPI nodeAPI) {
+        return SNAPSHOTS.computeIfAbsent(nodeAPI, MempoolSnapshot::new);
+    }
+
+    // Fee rate order statistics of the last fetched view, updated incrementally on each refresh
+    public FeeRateIndex feeRates() {
+        return feeRates;
+    }
+
+    // Returns a view no older than maxAgeMs, refreshing it from the node if needed
+    public View get(long maxAgeMs) throws RPCException {
+        View current = view;
+        if (TClock.millis() - current.timestamp <= maxAgeMs) { return current; }
+
+        refreshLock.lock();
+        try {
+            current = view;
+            // Another caller may have refreshed while this one waited on the lock
+            if (TClock.millis() - current.timestamp <= maxAgeMs) { return current; }
+            view = fetch();
+            return view;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // Starts a refresh on the executor if the view is older than maxAgeMs, so it is fetched while the caller does
+    // other work. A failed refresh is left for the next synchronous read to retry and report
+    public void refreshAsync(long maxAgeMs, Executor executor) {
+        if (TClock.millis() - view.timestamp <= maxAgeMs) { return; }
+        try {
+            executor.execute(() -> {
+                try {
+                    get(maxAgeMs);
+                } catch (Exception ignored) { }
+            });
+        } catch (RejectedExecutionException ignored) { }
+    }
+
+    private View fetch() throws RPCException {
+        Map<String, MempoolItem> mempool = nodeAPI.getAllMempoolItems().data()
+                .orElseThrow(TJob.dataExcept("NodeAPI.getAllMempoolItems"));
+
+        Map<String, MempoolItem> byBundleName = new HashMap<>(mempool.size() * 2);
+        long totalCost = 0;
+        for (MempoolItem item : mempool.values()) {
+            byBundleName.put(item.spendBundleName(), item);
+            totalCost += item.cost();
+        }
+        feeRates.applyDiff(view.byBundleName, byBundleName);
+        return new View(Collections.unmodifiableMap(byBundleName), totalCost, TClock.millis());
+    }
+}
@@ -0,0 +1,9 @@
+package io.mindspice.jxch.transact.service;
+
+
+// Queue lanes of a service, batches are formed from the highest priority lane first
+public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW
+}
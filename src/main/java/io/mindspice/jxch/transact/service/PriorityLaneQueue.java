@@ -0,0 +1,182 @@
+package io.mindspice.jxch.transact.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/*
+ Service queue with one lane per Priority. Within a lane items with a deadline come first, earliest deadline first,
+ followed by items without one in submission order, so the most urgent item of each lane is always at its head.
+ Batches take items due within the urgency window from every lane first, then fill from the highest lane down.
+ Size is tracked by a counter so it is O(1), with a capacity > 0 the queue is bounded and producers block, wait up to
+ a timeout or are rejected when it is full, as set by the OverflowPolicy.
+ */
+public class PriorityLaneQueue<T> {
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final List<PriorityBlockingQueue<Queued<T>>> lanes = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger count = new AtomicInteger();
+    private final int capacity;
+    private final Semaphore permits;
+    private final AtomicInteger overCapacity = new AtomicInteger();
+
+
+    public enum OverflowPolicy {
+        BLOCK,
+        TIMED,
+        REJECT
+    }
+
+
+    public record Queued<T>(T item, Priority priority, long deadline, long seq) {
+        public boolean hasDeadline() {
+            return deadline != NO_DEADLINE;
+        }
+    }
+
+    private static final Comparator<Queued<?>> LANE_ORDER =
+            Comparator.<Queued<?>>comparingLong(Queued::deadline).thenComparingLong(Queued::seq);
+
+    public PriorityLaneQueue() {
+        this(0);
+    }
+
+    // A capacity of 0 or less is unbounded
+    public PriorityLaneQueue(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.permits = capacity > 0 ? new Semaphore(capacity) : null;
+        for (int i = 0; i < Priority.values().length; ++i) {
+            lanes.add(new PriorityBlockingQueue<>(16, LANE_ORDER));
+        }
+    }
+
+    // Adds the item if there is room as per the policy, returns false if it was rejected or timed out.
+    // deadline is epoch ms, or NO_DEADLINE
+    public boolean offer(T item, Priority priority, long deadline, OverflowPolicy policy, long timeoutMs) {
+        if (!acquire(1, policy, timeoutMs)) { return false; }
+        enqueue(item, priority, deadline);
+        return true;
+    }
+
+    // Adds all or none of the items, a batch larger than the capacity is always rejected
+    public boolean offerAll(Collection<T> items, Priority priority, long deadline, OverflowPolicy policy,
+            long timeoutMs) {
+        if (items.isEmpty()) { return true; }
+        if (!acquire(items.size(), policy, timeoutMs)) { return false; }
+        items.forEach(item -> enqueue(item, priority, deadline));
+        return true;
+    }
+
+    // Adds an item recovered from the journal, taking a slot if there is one but never refusing it. Slots of
+    // items added past capacity are not returned when they are polled
+    public void restore(T item, Priority priority, long deadline) {
+        if (permits != null && !permits.tryAcquire()) { overCapacity.incrementAndGet(); }
+        enqueue(item, priority, deadline);
+    }
+
+    private boolean acquire(int n, OverflowPolicy policy, long timeoutMs) {
+        if (permits == null) { return true; }
+        if (n > capacity) { return false; }
+        try {
+            return switch (policy) {
+                case BLOCK -> {
+                    permits.acquire(n);
+                    yield true;
+                }
+                case TIMED -> permits.tryAcquire(n, timeoutMs, TimeUnit.MILLISECONDS);
+                case REJECT -> permits.tryAcquire(n);
+            };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void enqueue(T item, Priority priority, long deadline) {
+        // Counted before it is visible so the count never dips below the items a consumer can see
+        count.incrementAndGet();
+        lanes.get(priority.ordinal()).add(new Queued<>(item, priority, deadline, sequence.getAndIncrement()));
+    }
+
+    private Queued<T> poll(PriorityBlockingQueue<Queued<T>> lane) {
+        Queued<T> next = lane.poll();
+        if (next != null) {
+            count.decrementAndGet();
+            if (permits != null && !takeOverCapacity()) { permits.release(); }
+        }
+        return next;
+    }
+
+    private boolean takeOverCapacity() {
+        int over;
+        do {
+            over = overCapacity.get();
+            if (over == 0) { return false; }
+        } while (!overCapacity.compareAndSet(over, over - 1));
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return count.get() <= 0;
+    }
+
+    public int size() {
+        return Math.max(0, count.get());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Free slots in a bounded queue, Integer.MAX_VALUE if unbounded
+    public int remainingCapacity() {
+        return permits == null ? Integer.MAX_VALUE : permits.availablePermits();
+    }
+
+    public int size(Priority priority) {
+        return lanes.get(priority.ordinal()).size();
+    }
+
+    // Earliest deadline of any queued item, NO_DEADLINE if none have one
+    public long earliestDeadline() {
+        long earliest = NO_DEADLINE;
+        for (var lane : lanes) {
+            Queued<T> head = lane.peek();
+            if (head != null) { earliest = Math.min(earliest, head.deadline()); }
+        }
+        return earliest;
+    }
+
+    public boolean hasDueBefore(long epochMs) {
+        return earliestDeadline() <= epochMs;
+    }
+
+    // Takes up to max items, those with a deadline at or before dueBefore from every lane first
+    public List<Queued<T>> pollBatch(int max, long dueBefore) {
+        List<Queued<T>> batch = new ArrayList<>(Math.max(0, Math.min(max, size())));
+        for (var lane : lanes) {
+            while (batch.size() < max) {
+                Queued<T> head = lane.peek();
+                if (head == null || head.deadline() > dueBefore) { break; }
+                Queued<T> next = poll(lane);
+                if (next != null) { batch.add(next); }
+            }
+        }
+        for (var lane : lanes) {
+            while (batch.size() < max) {
+                Queued<T> next = poll(lane);
+                if (next == null) { break; }
+                batch.add(next);
+            }
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,65 @@
+package io.mindspice.jxch.transact.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntSupplier;
+
+
+/*
+ Limits how many of a service's jobs are past preparation and in their transaction loop at once. Jobs prepared ahead
+ of a free slot wait here with their bundle built and signed, in launch order, and are released as soon as a running
+ job finishes. Slots are handed out as futures so the non-blocking engine waits without holding a thread.
+ */
+public class PushGate {
+    private final IntSupplier slots;
+    private final ArrayDeque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private int inUse;
+
+
+    // Slots are read on every acquire and release, so changes to the supplied limit apply to the next job
+    public PushGate(IntSupplier slots) {
+        this.slots = slots;
+    }
+
+    // Completes once the caller holds a slot, which it must hand back with release()
+    public CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> slot = new CompletableFuture<>();
+        synchronized (this) {
+            waiting.removeIf(CompletableFuture::isDone); // Waiters cancelled by their job
+            if (inUse < limit() && waiting.isEmpty()) {
+                inUse++;
+                slot.complete(null);
+            } else {
+                waiting.add(slot);
+            }
+        }
+        return slot;
+    }
+
+    public void release() {
+        List<CompletableFuture<Void>> granted = new ArrayList<>(1);
+        synchronized (this) {
+            inUse--;
+            while (inUse < limit() && !waiting.isEmpty()) {
+                inUse++;
+                granted.add(waiting.poll());
+            }
+        }
+        // Completed outside the lock as the waiting job continues on this thread, a waiter cancelled in the
+        // meantime hands its slot straight back
+        for (CompletableFuture<Void> slot : granted) {
+            if (!slot.complete(null)) { release(); }
+        }
+    }
+
+    // Jobs prepared and waiting on a slot
+    public synchronized int waitingCount() {
+        return waiting.size();
+    }
+
+    private int limit() {
+        return Math.max(1, slots.getAsInt());
+    }
+}
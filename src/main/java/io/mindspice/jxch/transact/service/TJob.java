@@ -4,18 +4,28 @@ import com.fasterxml.jackson.databind.JsonNode;
 import io.mindspice.jxch.rpc.http.FullNodeAPI;
 import io.mindspice.jxch.rpc.http.WalletAPI;
 import io.mindspice.jxch.rpc.schemas.object.Coin;
-import io.mindspice.jxch.rpc.schemas.object.MempoolItem;
 import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
 import io.mindspice.jxch.rpc.util.ChiaUtils;
 import io.mindspice.jxch.rpc.util.JsonUtils;
 import io.mindspice.jxch.rpc.util.RPCException;
 import io.mindspice.jxch.rpc.util.RequestUtils;
+import io.mindspice.jxch.transact.journal.ItemJournal;
 import io.mindspice.jxch.transact.logging.TLogLevel;
 import io.mindspice.jxch.transact.logging.TLogger;
+import io.mindspice.jxch.transact.metrics.TMetrics;
 import io.mindspice.jxch.transact.settings.JobConfig;
+import io.mindspice.jxch.transact.util.SpendBundleAggregator;
+import io.mindspice.jxch.transact.util.TClock;
 
-import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Supplier;
 
 
@@ -23,7 +33,9 @@ public abstract class TJob {
 
     public enum State {
         INIT,
+        AWAITING_PUSH_SLOT,
         AWAITING_SYNC,
+        AWAITING_MEMPOOL,
         AWAITING_CONFIRMATION,
         RETRYING,
         STARTED,
@@ -32,15 +44,57 @@ public abstract class TJob {
         FAILED
     }
 
+    // Steps of the transaction engine, the job reports the matching State while it waits in each
+    protected enum Phase {
+        NEXT_ITERATION,
+        SYNC,
+        PUSH,
+        MEMPOOL_DETECT,
+        CONFIRM,
+        CONFIRM_CHECK,
+        DONE
+    }
+
+    protected static final long STEP_DONE = -1;
+    protected static final long MEMPOOL_DETECT_INTERVAL = 5000;
+    protected static final int MEMPOOL_DETECT_REPS = 10;
+    protected static final long CONFIRM_SETTLE_WAIT = 10000;
+    protected static final long CONFIRM_MEMPOOL_RECHECK = 30000;
 
     protected final JobConfig config;
     protected final TLogger tLogger;
     protected final WalletAPI walletAPI;
     protected final FullNodeAPI nodeAPI;
-    protected final String jobId = UUID.randomUUID().toString();
-    protected final Set<Coin> excludedCoins = ExcludedCoinRepo.getSharedExcluded();
+    protected final MempoolSnapshot mempool;
+    protected final ConfirmationTracker confirmations;
+    protected final WalletSyncWatcher walletSync;
+    protected String jobId = UUID.randomUUID().toString();
+    protected final CoinReservationManager reservations = CoinReservationManager.getShared();
+    protected final Set<Coin> excludedCoins = ConcurrentHashMap.newKeySet();
     protected volatile State state = State.INIT;
     protected TransactionState tState;
+    protected volatile AdaptiveJobSizer jobSizer;
+    protected volatile long startFeePerCostFloor;
+    protected volatile long deadline = PriorityLaneQueue.NO_DEADLINE;
+    protected final long startedAt = TClock.millis();
+    protected volatile ItemJournal journal;
+    protected volatile TMetrics metrics = TMetrics.unregistered();
+    protected volatile PushGate pushGate;
+    protected boolean resumed;
+
+    protected Phase phase = Phase.NEXT_ITERATION;
+    protected int iteration;
+    protected int mempoolWaitReps;
+    protected String bundleName;
+    protected long confirmWaitStart;
+    protected int mempoolCheckedPeak;
+    protected long mempoolCheckedAt;
+    protected long pushedAtNanos;
+    protected long confirmStartNanos;
+    protected boolean loopSuccess;
+
+    private final AtomicLongArray stateNanos = new AtomicLongArray(State.values().length);
+    private volatile long stateEnteredAt = TClock.nanoTime();
 
     public static Supplier<RPCException> dataExcept(String msg) {
         return () -> new RPCException("Required RPC call: " + msg + " returned Optional.empty");
@@ -51,12 +105,71 @@ public abstract class TJob {
         this.tLogger = tLogger;
         this.nodeAPI = nodeAPI;
         this.walletAPI = walletAPI;
+        this.mempool = MempoolSnapshot.forNode(nodeAPI);
+        this.confirmations = ConfirmationTracker.forNode(nodeAPI);
+        this.walletSync = WalletSyncWatcher.forWallet(walletAPI);
     }
 
     public State getState() {
         return state;
     }
 
+    // Sizer the job reports its bundle cost to, set by the service that launched it
+    public void setJobSizer(AdaptiveJobSizer jobSizer) {
+        this.jobSizer = jobSizer;
+    }
+
+    // Lowest fee per cost the job starts at and re-calculates to, for jobs carrying items near their deadline
+    public void setStartFeePerCostFloor(long feePerCost) {
+        this.startFeePerCostFloor = feePerCost;
+    }
+
+    // Earliest deadline of the job's items in epoch ms, for fee strategies that escalate towards it
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    // Journal the job checkpoints to before each push, set by the service that launched it
+    public void setJournal(ItemJournal journal) {
+        this.journal = journal;
+    }
+
+    // Registry the job records its phase timings and outcomes to, set by the service that launched it
+    public void setMetrics(TMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Gate the job waits on after preparing its bundle, set by the service that launched it
+    public void setPushGate(PushGate pushGate) {
+        this.pushGate = pushGate;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    // Restores a job from its last journaled checkpoint, the job resumes by checking whether its last pushed
+    // bundle confirmed, and carries on retrying with it if not. Its coins are re-reserved under its id
+    protected void restore(String jobId, JobCheckpoint checkpoint) {
+        if (state != State.INIT) { throw new IllegalStateException("Cannot restore a job after starting."); }
+        this.jobId = jobId;
+        this.tState = checkpoint.toState();
+        this.iteration = checkpoint.iteration();
+        this.resumed = true;
+        reservations.reserveAll(config.fundWalletId, tState.jobCoins, jobId, coinLeaseMs());
+        reservations.reserve(config.feeWalletId, tState.feeCoin, jobId, coinLeaseMs());
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Resumed from journal at iteration: " + iteration +
+                " | Fee Per Cost: " + tState.feePerCost +
+                " | Item UUIDs: " + tState.itemIds);
+        setState(State.AWAITING_CONFIRMATION);
+    }
+
+    // Checkpoint journaled before each push, subclasses add what they need to report their result
+    protected JobCheckpoint checkpoint() {
+        return JobCheckpoint.of(tState, iteration);
+    }
+
     public Set<Coin> getExcludedCoins() {
         return excludedCoins;
     }
@@ -65,178 +178,473 @@ public abstract class TJob {
         return jobId;
     }
 
+    public Map<State, Long> getStateTimings() {
+        Map<State, Long> timings = new EnumMap<>(State.class);
+        long now = TClock.nanoTime();
+        State current = state;
+        for (State s : State.values()) {
+            long nanos = stateNanos.get(s.ordinal());
+            if (s == current) { nanos += now - stateEnteredAt; }
+            if (nanos > 0) { timings.put(s, TimeUnit.NANOSECONDS.toMillis(nanos)); }
+        }
+        return timings;
+    }
+
+    protected void setState(State newState) {
+        long now = TClock.nanoTime();
+        stateNanos.addAndGet(state.ordinal(), now - stateEnteredAt);
+        stateEnteredAt = now;
+        state = newState;
+    }
+
     // Main loop, will keep trying until a successful mint, or until max reties are hit,
-    //  recalculating the fee every iteration incrementing additionally as per config
+    //  recalculating the fee every iteration incrementing additionally as per config.
+    //  This is the blocking driver of the engine, it sleeps the calling thread between steps
     public boolean transactionLoop(TransactionState tState) throws Exception {
+        CompletableFuture<Void> slot = acquirePushSlot();
+        try {
+            while (true) {
+                try {
+                    slot.get(leaseRenewInterval(), TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    reservations.renew(jobId, coinLeaseMs()); // Still parked, see renewWhileParked
+                }
+            }
+            startLoop(tState);
+            long delay;
+            while ((delay = step()) != STEP_DONE) {
+                Thread.sleep(delay);
+            }
+            return loopSuccess;
+        } finally {
+            releasePushSlot(slot);
+        }
+    }
+
+    // Non-blocking driver for the transaction engine, each step is scheduled on the scheduler after the
+    // previous one's wait, so no thread is held while the job waits
+    public CompletableFuture<Boolean> transactionLoopAsync(TransactionState tState, ScheduledExecutorService scheduler) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        CompletableFuture<Void> slot = acquirePushSlot();
+        result.whenComplete((success, ex) -> releasePushSlot(slot));
+        renewWhileParked(slot, scheduler);
+        slot.thenRun(() -> {
+            startLoop(tState);
+            scheduleStep(scheduler, result, 0);
+        });
+        return result;
+    }
+
+    // Jobs prepared ahead of a free slot wait here with their bundle ready, so they push as soon as a running
+    // job finishes
+    private CompletableFuture<Void> acquirePushSlot() {
+        if (pushGate == null) { return CompletableFuture.completedFuture(null); }
+        CompletableFuture<Void> slot = pushGate.acquire();
+        if (!slot.isDone()) {
+            setState(State.AWAITING_PUSH_SLOT);
+            tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Job: " + jobId +
+                    " | Bundle prepared, awaiting push slot" +
+                    " | Jobs Waiting: " + pushGate.waitingCount());
+        }
+        return slot;
+    }
+
+    // A job parked on the push slot takes no steps, so its coin leases are renewed on the side until the slot is
+    // granted or withdrawn. Otherwise a wait longer than coinLeaseSec would let another job reserve its coins
+    private void renewWhileParked(CompletableFuture<Void> slot, ScheduledExecutorService scheduler) {
+        if (slot.isDone()) { return; }
+        long interval = leaseRenewInterval();
+        ScheduledFuture<?> renewal = scheduler.scheduleAtFixedRate(
+                () -> reservations.renew(jobId, coinLeaseMs()), interval, interval, TimeUnit.MILLISECONDS
+        );
+        slot.whenComplete((v, ex) -> renewal.cancel(false));
+    }
+
+    private long leaseRenewInterval() {
+        return Math.max(1000, coinLeaseMs() / 3);
+    }
+
+    // A slot not yet granted is withdrawn instead, so a job ended while waiting does not hand back a slot it never held
+    private void releasePushSlot(CompletableFuture<Void> slot) {
+        if (pushGate != null && !slot.cancel(false)) { pushGate.release(); }
+    }
+
+    private void scheduleStep(ScheduledExecutorService scheduler, CompletableFuture<Boolean> result, long delay) {
+        try {
+            scheduler.schedule(() -> runStep(scheduler, result), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(ex);
+        }
+    }
+
+    private void runStep(ScheduledExecutorService scheduler, CompletableFuture<Boolean> result) {
+        if (result.isDone()) { return; } // Cancelled externally
+        try {
+            long delay = step();
+            if (delay == STEP_DONE) {
+                result.complete(loopSuccess);
+            } else {
+                scheduleStep(scheduler, result, delay);
+            }
+        } catch (Exception ex) {
+            result.completeExceptionally(ex);
+        }
+    }
+
+    protected void startLoop(TransactionState tState) {
         this.tState = tState;
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
+        loopSuccess = false;
+        metrics.increment(TMetrics.Counter.JOBS_STARTED);
+        if (resumed) {
+            phase = Phase.CONFIRM_CHECK;
+        } else {
+            iteration = 0;
+            phase = Phase.NEXT_ITERATION;
+        }
+        tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Job: " + jobId +
                 " | Action: Starting Mint: " +
                 " | BundleCost: " + tState.bundleCost +
                 " | FeePerCost: " + tState.feePerCost +
                 " | TotalCost: " + tState.feeAmount);
+    }
 
-        for (int i = 0; i < config.maxRetries; ++i) {
-            tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                    " | Action: LoopIteration: " + i);
+    // Advances the engine through its phases until it needs to wait, returns the wait in ms before the next
+    // step should be run or STEP_DONE once the job has reached a terminal outcome
+    protected long step() throws Exception {
+        reservations.renew(jobId, coinLeaseMs());
+        long delay;
+        do {
+            delay = switch (phase) {
+                case NEXT_ITERATION -> stepNextIteration();
+                case SYNC -> stepSync();
+                case PUSH -> stepPush();
+                case MEMPOOL_DETECT -> stepMempoolDetect();
+                case CONFIRM -> stepConfirm();
+                case CONFIRM_CHECK -> stepConfirmCheck();
+                case DONE -> STEP_DONE;
+            };
+        } while (delay == 0);
+        return delay;
+    }
 
-            // Spin until sync
-            while (!walletAPI.getSyncStatus().data().orElseThrow(dataExcept("WalletAPI.getSyncStatus")).synced()) {
-                state = State.AWAITING_SYNC;
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                        " | Failed iteration: " + i + "/" + config.maxRetries +
-                        " | Reason: Wallet  not Synced" +
-                        " | Retrying in " + config.retryWaitInterval + "ms");
-                Thread.sleep(config.retryWaitInterval);
-            }
-            state = i == 0 ? State.STARTED : State.RETRYING;
-
-            if (i != 0 && tState.feePerCost < config.maxFeePerCost
-                    && (i % config.feeIncInterval == 0 || tState.needReplaceFee)) {
-
-                if (tState.needReplaceFee) {
-                    tState.feePerCost = Math.min(tState.feePerCost + 5, config.maxFeePerCost);
-                    tState.feeAmount = tState.bundleCost * tState.feePerCost;
-                    tState.needReplaceFee = false;
-                } else {
-                    long currFeePerCost = getFeePerCostNeeded(tState.bundleCost);
-                    long baseFpc = Math.max(Math.max(currFeePerCost, 5), config.minFeePerCost);
-                    long incValue = (i / config.feeIncInterval);
-                    long incFpc = baseFpc + incValue;
-                    tState.feePerCost = Math.min(incFpc, config.maxFeePerCost);
-                    tState.feeAmount = tState.feePerCost * tState.bundleCost;
-                }
+    private long stepNextIteration() {
+        if (iteration >= config.maxRetries) {
+            return finishLoop(false);
+        }
+        tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Job: " + jobId +
+                " | Action: LoopIteration: " + iteration);
+        phase = Phase.SYNC;
+        return 0;
+    }
 
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                        " | Action: FeeReCalc" +
-                        " | FeePerCost: " + tState.feePerCost +
-                        " | TotalFee: " + tState.feeAmount);
+    private long stepSync() throws Exception {
+        // The shared watcher polls the wallet once per interval for every job, waiting jobs re-check the cached
+        // status at the same interval so they resume right after the wallet resyncs
+        if (!walletSync.isSynced(config.syncPollInterval)) {
+            setState(State.AWAITING_SYNC);
+            tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Job: " + jobId +
+                    " | Failed iteration: " + iteration + "/" + config.maxRetries +
+                    " | Reason: Wallet  not Synced" +
+                    " | Retrying in " + config.syncPollInterval + "ms");
+            return config.syncPollInterval;
+        }
+        setState(iteration == 0 ? State.STARTED : State.RETRYING);
+        phase = Phase.PUSH;
+        return 0;
+    }
 
-                if (tState.feeAmount != 0) {
-                    SpendBundle feeBundle = getFeeBundle(tState.feeCoin, tState.feeAmount);
-                    tState.aggBundle = walletAPI.aggregateSpends(List.of(tState.transactionBundle, feeBundle))
-                            .data().orElseThrow(dataExcept("WalletAPI.aggregateSpends"));
-                }
+    private long stepPush() throws Exception {
+        int i = iteration;
+        long feePerCost = i != 0 && tState.feePerCost < config.maxFeePerCost
+                ? clampFeePerCost(config.feeStrategy.retryFeePerCost(feeContext(tState.bundleCost)))
+                : tState.feePerCost;
+        tState.needReplaceFee = false;
+        // The bundle is only rebuilt when the strategy changes the fee, otherwise the last one is re-pushed
+        if (feePerCost != tState.feePerCost) {
+            long prevFeePerCost = tState.feePerCost;
+            tState.feePerCost = feePerCost;
+            tState.feeAmount = tState.feePerCost * tState.bundleCost;
+            // With a fee ladder the fee is rounded up to the next pre-signed rung, so no wallet call is needed
+            Map.Entry<Long, SpendBundle> rung = tState.feeLadder != null && tState.feePerCost > 0
+                    ? tState.feeLadder.ceilingEntry(tState.feePerCost)
+                    : null;
+            if (rung != null) {
+                tState.feePerCost = rung.getKey();
+                tState.feeAmount = tState.feePerCost * tState.bundleCost;
             }
-            if (config.debugSpendbundle){
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, JsonUtils.writePretty(tState.aggBundle));
+            if (tState.feePerCost > prevFeePerCost) { metrics.increment(TMetrics.Counter.FEE_BUMPS); }
+
+            tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Job: " + jobId +
+                    " | Action: FeeReCalc" +
+                    " | Strategy: " + config.feeStrategy +
+                    " | FeePerCost: " + tState.feePerCost +
+                    " | TotalFee: " + tState.feeAmount +
+                    " | From Ladder: " + (rung != null));
+
+            if (rung != null) {
+                tState.aggBundle = rung.getValue();
+            } else if (tState.feeAmount != 0) {
+                SpendBundle feeBundle = getFeeBundle(tState.feeCoin, tState.feeAmount);
+                tState.aggBundle = aggregateSpends(List.of(tState.transactionBundle, feeBundle));
+            } else {
+                tState.aggBundle = tState.transactionBundle; // Strategy dropped the fee on a now empty mempool
             }
+        }
+        if (config.debugSpendbundle) {
+            tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> JsonUtils.writePretty(tState.aggBundle));
+        }
 
-            tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                    " | Action: PushingTransaction");
-            var pushResponse = nodeAPI.pushTx(tState.aggBundle);
-
-            if (!pushResponse.success()) {
-                // Consider transaction a success if the coin id related to it is spent this means the transaction
-                // submission from a past iteration was successful and not recognized due to network delay or the coin
-                // was spent elsewhere as the result of user error.
-                if ((pushResponse.error().contains("DOUBLE_SPEND"))) {
-                    if (i == 0) {
-                        tLogger.log(this.getClass(), TLogLevel.ERROR, "Job: " + jobId +
-                                " | Job: " + jobId + " Failed (DOUBLE_SPEND) on first iteration." +
-                                " | Note:  Double spend can be due to a past successful transaction being " +
-                                "re-submitted, but this would never occur on a first iteration" +
-                                " | Fee: " + tState.feeAmount +
-                                " | Item UUIDs: " + tState.itemIds);
-                        throw new IllegalStateException("Double spend on first iteration");
-                    }
-                    tLogger.log(this.getClass(), TLogLevel.WARNING, "Job: " + jobId +
-                            " | Performed a DOUBLE_SPEND, job consider successful. This error can be ignored, " +
-                            "but could result in a failed job if the coin was spent elsewhere due to user error.");
-
-                    tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                            " | Job: " + jobId + " Successful (DOUBLE_SPEND)" +
+        logAction("PushingTransaction");
+        if (tState.feeAmount != 0) { tState.feeCoinPushed = true; }
+        // The bundle must be journaled before it can reach the chain, so a restart resumes it rather than re-minting
+        if (journal != null) { journal.sync(journal.push(jobId, checkpoint().toBytes())); }
+        long pushStart = TClock.nanoTime();
+        var pushResponse = nodeAPI.pushTx(tState.aggBundle);
+        pushedAtNanos = metrics.recordSince(TMetrics.Timer.PUSH, pushStart);
+
+        if (!pushResponse.success()) {
+            // Consider transaction a success if the coin id related to it is spent this means the transaction
+            // submission from a past iteration was successful and not recognized due to network delay or the coin
+            // was spent elsewhere as the result of user error.
+            if ((pushResponse.error().contains("DOUBLE_SPEND"))) {
+                metrics.increment(TMetrics.Counter.DOUBLE_SPENDS);
+                if (i == 0) {
+                    tLogger.log(this.getClass(), TLogLevel.ERROR, () -> "Job: " + jobId +
+                            " | Job: " + jobId + " Failed (DOUBLE_SPEND) on first iteration." +
+                            " | Note:  Double spend can be due to a past successful transaction being " +
+                            "re-submitted, but this would never occur on a first iteration" +
                             " | Fee: " + tState.feeAmount +
                             " | Item UUIDs: " + tState.itemIds);
-                    state = State.SUCCESS;
-
-                    return true;
-                } else if (pushResponse.error().contains("INVALID_FEE_TOO_CLOSE_TO_ZERO")) {
-                    tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                            " | Failed iteration: " + i + "/" + config.maxRetries +
-                            " | Reason: INVALID_FEE_TOO_CLOSE_TO_ZERO " +
-                            " | Current Fee Per Cost: " + tState.feePerCost +
-                            " | Retrying in " + config.retryWaitInterval + "ms");
-                    Thread.sleep(config.retryWaitInterval);
-                    continue;
+                    throw new IllegalStateException("Double spend on first iteration");
                 }
-                tLogger.log(this.getClass(), TLogLevel.ERROR, "Job: " + jobId +
+                tLogger.log(this.getClass(), TLogLevel.WARNING, () -> "Job: " + jobId +
+                        " | Performed a DOUBLE_SPEND, job consider successful. This error can be ignored, " +
+                        "but could result in a failed job if the coin was spent elsewhere due to user error.");
+
+                tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                        " | Job: " + jobId + " Successful (DOUBLE_SPEND)" +
+                        " | Fee: " + tState.feeAmount +
+                        " | Item UUIDs: " + tState.itemIds);
+                setState(State.SUCCESS);
+                return finishLoop(true);
+            } else if (pushResponse.error().contains("INVALID_FEE_TOO_CLOSE_TO_ZERO")) {
+                tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                        " | Failed iteration: " + i + "/" + config.maxRetries +
+                        " | Reason: INVALID_FEE_TOO_CLOSE_TO_ZERO " +
+                        " | Current Fee Per Cost: " + tState.feePerCost +
+                        " | Retrying in " + config.retryWaitInterval + "ms");
+                return endIteration(config.retryWaitInterval);
+            } else if (pushResponse.error().contains("INVALID_FEE_LOW_FEE")) {
+                // The mempool is full of bundles paying more, the fee strategy prices the retry as a replacement
+                tState.needReplaceFee = true;
+                tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
                         " | Failed iteration: " + i + "/" + config.maxRetries +
-                        " | Reason: Unknown error on push " +
-                        " | Error:" + pushResponse.error() +
+                        " | Reason: INVALID_FEE_LOW_FEE " +
                         " | Current Fee Per Cost: " + tState.feePerCost +
                         " | Retrying in " + config.retryWaitInterval + "ms");
+                return endIteration(config.retryWaitInterval);
             }
+            tLogger.log(this.getClass(), TLogLevel.ERROR, () -> "Job: " + jobId +
+                    " | Failed iteration: " + i + "/" + config.maxRetries +
+                    " | Reason: Unknown error on push " +
+                    " | Error:" + pushResponse.error() +
+                    " | Current Fee Per Cost: " + tState.feePerCost +
+                    " | Retrying in " + config.retryWaitInterval + "ms");
+        }
 
-            String bundleName = pushResponse.data().orElseThrow(dataExcept("pushResponse")).spendBundleName();
+        bundleName = pushResponse.data().orElseThrow(dataExcept("pushResponse")).spendBundleName();
 
-            tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                    " | Spendbundle Name: " + bundleName);
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Spendbundle Name: " + bundleName);
 
-            boolean txFound = checkMempoolForTx(bundleName);
+        if (checkMempoolForTx(bundleName)) {
+            return enterConfirmation();
+        }
+        mempoolWaitReps = 0;
+        setState(State.AWAITING_MEMPOOL);
+        phase = Phase.MEMPOOL_DETECT;
+        return MEMPOOL_DETECT_INTERVAL;
+    }
 
-            int waitReps = 0;
-            while (waitReps < 10 && !txFound) {
-                Thread.sleep(5000);
-                waitReps++;
-                txFound = checkMempoolForTx(bundleName);
-                tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                        " | Transaction State: Awaiting mempool detection" +
-                        " | Wait Iteration: " + waitReps +
-                        " | TransactionId: " + bundleName +
-                        " | Note: This can happen occasionally but if occurring often may be an issue " +
-                        "with your node and/or node resources");
-            }
+    private long stepMempoolDetect() throws Exception {
+        mempoolWaitReps++;
+        if (checkMempoolForTx(bundleName)) {
+            return enterConfirmation();
+        }
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Transaction State: Awaiting mempool detection" +
+                " | Wait Iteration: " + mempoolWaitReps +
+                " | TransactionId: " + bundleName +
+                " | Note: This can happen occasionally but if occurring often may be an issue " +
+                "with your node and/or node resources");
+
+        if (mempoolWaitReps < MEMPOOL_DETECT_REPS) {
+            return MEMPOOL_DETECT_INTERVAL;
+        }
+        // A well paying bundle can be included in a block before the mempool was ever seen with it
+        var coinRecord = nodeAPI.getCoinRecordByName(confirmCoinId());
+        if (coinRecord.data().orElseThrow(dataExcept("NodeAPi.getCoinRecordsByName")).spent()) {
+            return confirmSuccess();
+        }
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Transaction State: Failed to locate tx in mempool" +
+                " | Iteration: " + iteration + "/" + config.maxRetries +
+                " | Current Fee Per Cost: " + tState.feePerCost +
+                " | Retrying in " + config.retryWaitInterval + "ms");
+        setState(State.RETRYING);
+        return endIteration(config.retryWaitInterval);
+    }
 
-            if (txFound) {
-                state = State.AWAITING_CONFIRMATION;
-                tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                        " | Transaction State: In Mempool" +
-                        " | Transaction Id: " + bundleName);
-
-                boolean completed = waitForTxConfirmation(bundleName, tState.jobCoins.get(0));
-                if (completed) {
-                    tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                            " | Transaction State: Successful" +
-                            " | Transaction Id: " + bundleName +
-                            " | Fee: " + tState.feeAmount +
-                            " | Item UUIDs: " + tState.itemIds);
-                    state = State.SUCCESS;
-                    return true;
-                } else {
-                    tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                            " | Transaction State: Failed" +
-                            " | Transaction Id: " + bundleName +
-                            " | Iteration: " + i + "/" + config.maxRetries +
-                            " | Reason: Tx dropped from mempool or confirm wait wait meet" +
-                            " | Current Fee Per Cost: " + tState.feePerCost +
-                            " | Retrying in " + config.retryWaitInterval + "ms");
-                }
-            } else {
-                tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                        " | Transaction State: Failed to locate tx in mempool" +
-                        " | Iteration: " + i + "/" + config.maxRetries +
-                        " | Current Fee Per Cost: " + tState.feePerCost +
-                        " | Retrying in " + config.retryWaitInterval + "ms");
+    private long enterConfirmation() {
+        setState(State.AWAITING_CONFIRMATION);
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Transaction State: In Mempool" +
+                " | Transaction Id: " + bundleName);
+        confirmWaitStart = TClock.epochSecond();
+        markMempoolChecked();
+        confirmStartNanos = metrics.recordSince(TMetrics.Timer.MEMPOOL_DETECT, pushedAtNanos);
+        confirmations.watch(confirmCoinId());
+        phase = Phase.CONFIRM;
+        return config.peakPollInterval;
+    }
+
+    private long stepConfirm() throws Exception {
+        // The shared tracker looks up the job's coin once per new block, along with every other waiting job's
+        confirmations.refresh(config.peakPollInterval);
+        if (confirmations.isSpent(confirmCoinId())) {
+            return confirmSuccess();
+        }
+        // Between blocks only the tracker's peak poll runs, the mempool is re-checked once a new block has passed
+        // without the coin being spent, or every CONFIRM_MEMPOOL_RECHECK should blocks be slow
+        if (confirmations.peakHeight() == mempoolCheckedPeak
+                && TClock.millis() - mempoolCheckedAt < CONFIRM_MEMPOOL_RECHECK) {
+            logAction("waitForConfirmation");
+            return config.peakPollInterval;
+        }
+        markMempoolChecked();
+
+        /* Once we know the tx is no longer in the mempool, it needs to be confirmed
+         the actual coin has been spent to confirm transaction as successful */
+        if (!checkMempoolForTx(bundleName)) {
+            phase = Phase.CONFIRM_CHECK;
+            return CONFIRM_SETTLE_WAIT; // Give the node a little wait time to update to be safe
+        }
+
+        if (tState.feePerCost < config.maxFeePerCost
+                && config.feeStrategy.shouldReplace(feeContext(tState.bundleCost))) {
+            tState.needReplaceFee = true;
+            tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                    " | Re-submitting with a higher fee" +
+                    " | Strategy: " + config.feeStrategy +
+                    " | Waited: " + (TClock.epochSecond() - confirmWaitStart) + "s");
+            // The bundle is still in the mempool so the replacement is pushed straight away, waiting would only
+            // give it time to confirm under the fee coin the replacement re-spends
+            confirmations.unwatch(confirmCoinId());
+            setState(State.RETRYING);
+            return endIteration(0);
+        }
+        logAction("waitForConfirmation");
+        return config.peakPollInterval;
+    }
+
+    private void markMempoolChecked() {
+        mempoolCheckedPeak = confirmations.peakHeight();
+        mempoolCheckedAt = TClock.millis();
+    }
+
+    // Dropped from the mempool without the tracker seeing the spend yet, check the coin directly before retrying
+    private long stepConfirmCheck() throws Exception {
+        if (!confirmations.isSpent(confirmCoinId())) {
+            var mintCoinRecord = nodeAPI.getCoinRecordByName(confirmCoinId());
+            if (!mintCoinRecord.data().orElseThrow(dataExcept("NodeAPi.getCoinRecordsByName")).spent()) {
+                return confirmFailed();
             }
-            state = State.RETRYING;
-            Thread.sleep(config.retryWaitInterval);
         }
-        return false;
+        return confirmSuccess();
+    }
+
+    private long confirmSuccess() {
+        confirmations.unwatch(confirmCoinId());
+        // A job resumed from the journal did not see its bundle enter the mempool
+        if (confirmStartNanos != 0) { metrics.recordSince(TMetrics.Timer.CONFIRMATION, confirmStartNanos); }
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Transaction State: Successful" +
+                " | Transaction Id: " + bundleName +
+                " | Fee: " + tState.feeAmount +
+                " | Item UUIDs: " + tState.itemIds);
+        setState(State.SUCCESS);
+        return finishLoop(true);
+    }
+
+    private long confirmFailed() {
+        confirmations.unwatch(confirmCoinId());
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Transaction State: Failed" +
+                " | Transaction Id: " + bundleName +
+                " | Iteration: " + iteration + "/" + config.maxRetries +
+                " | Reason: Tx dropped from mempool or confirm wait wait meet" +
+                " | Current Fee Per Cost: " + tState.feePerCost +
+                " | Retrying in " + config.retryWaitInterval + "ms");
+        setState(State.RETRYING);
+        return endIteration(config.retryWaitInterval);
+    }
+
+    private long endIteration(long waitMs) {
+        metrics.increment(TMetrics.Counter.RETRIES);
+        iteration++;
+        phase = Phase.NEXT_ITERATION;
+        return waitMs;
+    }
+
+    private long finishLoop(boolean success) {
+        loopSuccess = success;
+        if (success) { metrics.recordFinalFeePerCost(tState.feePerCost); }
+        phase = Phase.DONE;
+        return STEP_DONE;
+    }
+
+    // The first coin spent by the job's bundle, its spend confirms the transaction
+    private String confirmCoinId() {
+        return ChiaUtils.getCoinId(tState.jobCoins.get(0));
+    }
+
+    // Debug trace of the step the job is on, the message is not built unless DEBUG is enabled
+    protected void logAction(String action) {
+        if (tLogger.isEnabled(TLogLevel.DEBUG)) {
+            tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId + " | Action: " + action);
+        }
     }
 
     protected boolean checkMempoolForTx(String sbHash) throws Exception {
 
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: checkingMempoolForTransaction");
-        return nodeAPI.getAllMempoolItems().data()
-                .orElseThrow(dataExcept("NodeAPI.getAllMempoolItems"))
-                .entrySet().stream()
-                .anyMatch(e -> e.getValue().spendBundleName().equals(sbHash));
+        logAction("checkingMempoolForTransaction");
+        return mempool.get(config.mempoolRefreshInterval).contains(sbHash);
+    }
+
+    // Signs the job's bundle with the fee attached at feeLadderSteps fee per costs, evenly spaced from
+    // minFeePerCost (at least 5) to maxFeePerCost, for fee bumps to pick from. Rungs at or below the starting fee
+    // per cost are skipped, the fee coin was selected to cover maxFeePerCost
+    protected void buildFeeLadder() throws RPCException {
+        logAction("buildingFeeLadder");
+        long high = config.maxFeePerCost;
+        long low = Math.min(Math.max(5, config.minFeePerCost), high);
+        int steps = config.feeLadderSteps;
+        NavigableMap<Long, SpendBundle> ladder = new TreeMap<>();
+        for (int step = 0; step < steps; ++step) {
+            long feePerCost = steps == 1 ? high : low + (high - low) * step / (steps - 1);
+            if (feePerCost <= tState.feePerCost || ladder.containsKey(feePerCost)) { continue; }
+            SpendBundle feeBundle = getFeeBundle(tState.feeCoin, feePerCost * tState.bundleCost);
+            ladder.put(feePerCost, aggregateSpends(List.of(tState.transactionBundle, feeBundle)));
+        }
+        tState.feeLadder = ladder;
+        tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Job: " + jobId +
+                " | Action: FeeLadderBuilt" +
+                " | Rungs: " + ladder.keySet());
     }
 
     protected SpendBundle getFeeBundle(Coin feeCoin, long feeAmount) throws RPCException {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: gettingFeeBundle");
+        logAction("gettingFeeBundle");
         JsonNode feeBundleReq = new RequestUtils.SignedTransactionBuilder()
                 .addAddition(config.changeTarget, feeCoin.amount() - feeAmount) // return amount not used for fee
                 .addCoin(feeCoin)
@@ -247,97 +655,122 @@ public abstract class TJob {
                 orElseThrow(dataExcept("WalletAPI.createSignedTransaction")).spendBundle();
     }
 
+    // Attaches the fee bundle in process, or through the wallet's aggregate_spends if localAggregation is disabled.
+    // With verifyAggregation the wallet's result is fetched as well and used in place of a local result that differs
+    protected SpendBundle aggregateSpends(List<SpendBundle> spendBundles) throws RPCException {
+        logAction("aggregatingSpends");
+        long start = TClock.nanoTime();
+        SpendBundle aggregated;
+        if (!config.localAggregation) {
+            aggregated = walletAPI.aggregateSpends(spendBundles).data()
+                    .orElseThrow(dataExcept("WalletAPI.aggregateSpends"));
+        } else {
+            aggregated = SpendBundleAggregator.aggregate(spendBundles);
+            if (config.verifyAggregation) {
+                SpendBundle walletAggregated = walletAPI.aggregateSpends(spendBundles).data()
+                        .orElseThrow(dataExcept("WalletAPI.aggregateSpends"));
+                if (!SpendBundleAggregator.isEquivalent(aggregated, walletAggregated)) {
+                    SpendBundle local = aggregated;
+                    tLogger.log(this.getClass(), TLogLevel.WARNING, () -> "Job: " + jobId +
+                            " | Local aggregation differs from aggregate_spends, using the wallet's bundle" +
+                            " | Local Signature: " + local.aggregatedSignature() +
+                            " | Wallet Signature: " + walletAggregated.aggregatedSignature());
+                    aggregated = walletAggregated;
+                }
+            }
+        }
+        metrics.recordSince(TMetrics.Timer.AGGREGATION, start);
+        return aggregated;
+    }
+
     protected long getSpendCost(SpendBundle spend) throws Exception {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: gettingSpendBundleCost");
-        return nodeAPI.getSpendBundleInclusionCost(spend).data()
+        logAction("gettingSpendBundleCost");
+        long start = TClock.nanoTime();
+        long cost = nodeAPI.getSpendBundleInclusionCost(spend).data()
                 .orElseThrow(dataExcept("NodeApi.getSpendBundleInclusionCost")).cost();
+        metrics.recordSince(TMetrics.Timer.COST_LOOKUP, start);
+        return cost;
     }
 
-    protected long getFeePerCostNeeded(long cost) throws RPCException {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: gettingFeePerCostNeeded");
-        Map<String, MempoolItem> mempool =
-                nodeAPI.getAllMempoolItems().data().orElseThrow(dataExcept("NodeAPI.getAllMempoolItems"));
-
-        long totalMemCost = mempool.values().stream()
-                .mapToLong(MempoolItem::cost)
-                .sum();
-
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | totalMemCost: " + totalMemCost);
-
-        long feeNeeded = 0;
-        if (totalMemCost + (cost * 1.05) > config.maxMemPoolCost) { // add a 5% buffer for bundle
-            var sortedMempool = mempool.values().stream()
-                    .filter(i -> i.fee() > 0)
-                    .sorted(Comparator.comparing(MempoolItem::fee))
-                    .toList();
-
-            var memSum = 0L;
-            for (MempoolItem item : sortedMempool) {
-                if (memSum < (cost * 1.05)) { // 5% extra  for a buffer
-                    memSum += item.cost();
-                    if (item.cost() > 0) {
-                        feeNeeded = item.fee() / item.cost();
-                    }
-                }
-            }
-        }
+    protected void recordBundleCost(int items, long bundleCost) {
+        if (jobSizer != null) { jobSizer.record(items, bundleCost); }
+    }
 
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | TotalMemPoolCost: " + totalMemCost +
-                " | FeeNeeded:" + feeNeeded);
-        return feeNeeded;
+    // Fee per cost of the job's first push, as decided by the configured fee strategy
+    protected long initialFeePerCost(long bundleCost) throws RPCException {
+        logAction("gettingInitialFeePerCost");
+        long feePerCost = clampFeePerCost(config.feeStrategy.initialFeePerCost(feeContext(bundleCost)));
+        tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Job: " + jobId +
+                " | Strategy: " + config.feeStrategy +
+                " | InitialFeePerCost: " + feePerCost);
+        return feePerCost;
     }
 
-    protected Coin getFeeCoin(long amount, List<Coin> excludedCoins) throws RPCException {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: gettingFeeCoin");
+    // What the fee strategy is given, from the shared mempool snapshot and the job's progress
+    protected FeeStrategy.Context feeContext(long bundleCost) throws RPCException {
+        MempoolSnapshot.View mempoolView = mempool.get(config.mempoolRefreshInterval);
+        boolean inMempool = phase == Phase.CONFIRM;
+        return new FeeStrategy.Context(
+                config,
+                bundleCost,
+                tState != null ? tState.feePerCost : 0,
+                iteration,
+                tState != null && tState.needReplaceFee,
+                startFeePerCostFloor,
+                startedAt,
+                deadline,
+                inMempool ? TClock.epochSecond() - confirmWaitStart : -1,
+                mempoolView.totalCost(),
+                mempool.feeRates(),
+                TClock.millis()
+        );
+    }
 
-        var jsonNode = new RequestUtils.SpendableCoinBuilder()
-                .setMinCoinAmount(amount)
-                .setExcludedCoins(excludedCoins)
-                .setWalletId(config.feeWalletId)
-                .build();
+    private long clampFeePerCost(long feePerCost) {
+        return Math.min(Math.max(feePerCost, 0), config.maxFeePerCost);
+    }
 
-        return walletAPI.getSpendableCoins(jsonNode)
-                .data()
-                .orElseThrow(dataExcept("WalletApi.getSpendableCoins"))
-                .confirmedRecords()
-                .stream()
-                .filter(c -> !c.spent())
-                .sorted(Comparator.comparing(c -> c.coin().amount()))
-                .toList()
-                .get(0).coin();
-    }
-
-    protected boolean waitForTxConfirmation(String txId, Coin txParentCoin) throws Exception {
-        long waitStartTime = Instant.now().getEpochSecond();
-        while (true) {
-            if (config.maxConfirmWait > 0) {
-                long nowTime = Instant.now().getEpochSecond();
-                if (nowTime - waitStartTime > config.maxConfirmWait) {
-
-                    if (tState.feePerCost != config.maxFeePerCost) {
-                        tState.needReplaceFee = true;
-                        tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                                " | Re-submitting due to max confirm wait(" + config.maxConfirmWait + "s)");
-                        return false;
-                    }
-                }
-            }
-            tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                    " | Action: waitForConfirmation");
-            Thread.sleep(30000);
-            /* getTxStatus returns true if tx is no longer in the mempool
-             Once we know it's not in the mempool, it needs to be confirmed
-             the actual coin has been spent to confirm transaction as successful */
-            if (!checkMempoolForTx(txId)) {
-                Thread.sleep(10000); // Give the node a little wait time to update to be safe
-                var mintCoinRecord = nodeAPI.getCoinRecordByName(ChiaUtils.getCoinId(txParentCoin));
-                return mintCoinRecord.data().orElseThrow(dataExcept("NodeAPi.getCoinRecordsByName")).spent();
+    protected Coin getFeeCoin(long amount) throws RPCException {
+        logAction("gettingFeeCoin");
+        long start = TClock.nanoTime();
+        Coin feeCoin = selectCoin(config.feeWalletId, amount);
+        metrics.recordSince(TMetrics.Timer.FEE_COIN_SELECT, start);
+        FeeCoinPool.forWallet(walletAPI, config.feeWalletId).maintain();
+        return feeCoin;
+    }
+
+    protected WalletCoinIndex getCoinIndex(int walletId) throws RPCException {
+        return WalletCoinIndex.forWallet(walletAPI, walletId).ensureFresh(config.coinIndexResyncSec * 1000L);
+    }
+
+    // Reserves the smallest coin of at least minAmount in the wallet, coins reserved by another job since they
+    // were indexed are skipped over
+    protected Coin selectCoin(int walletId, long minAmount) throws RPCException {
+        for (Coin coin : getCoinIndex(walletId).ascendingFrom(minAmount)) {
+            if (excludedCoins.contains(coin)) { continue; }
+            if (reservations.reserve(walletId, coin, jobId, coinLeaseMs())) {
+                return coin;
             }
         }
+        throw new IllegalStateException("No unreserved coin of at least " + minAmount + " available in wallet: "
+                + walletId);
+    }
+
+    // Removes the coins spent by a successful job from the wallet indexes. The fee coin is taken as spent if any
+    // pushed bundle carried a fee, the bundle that confirmed may be an earlier one than the last pushed. If it was
+    // not, the coin returns to the index on its next resync
+    protected void markCoinsSpent() {
+        WalletCoinIndex.forWallet(walletAPI, config.fundWalletId).markSpent(tState.jobCoins);
+        if (tState.feeCoinPushed || tState.feeAmount != 0) {
+            WalletCoinIndex.forWallet(walletAPI, config.feeWalletId).markSpent(tState.feeCoin);
+        }
+    }
+
+    protected long coinLeaseMs() {
+        return config.coinLeaseSec * 1000L;
+    }
+
+    protected void releaseCoins() {
+        reservations.releaseAll(jobId);
     }
 }
@@ -1,27 +1,53 @@
 package io.mindspice.jxch.transact.service;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.mindspice.jxch.rpc.http.FullNodeAPI;
 import io.mindspice.jxch.rpc.http.WalletAPI;
+import io.mindspice.jxch.transact.journal.ItemJournal;
 import io.mindspice.jxch.transact.logging.TLogLevel;
 import io.mindspice.jxch.transact.logging.TLogger;
+import io.mindspice.jxch.transact.metrics.TMetrics;
 import io.mindspice.jxch.transact.settings.JobConfig;
+import io.mindspice.jxch.transact.util.JobExecutors;
+import io.mindspice.jxch.transact.util.Pair;
+import io.mindspice.jxch.transact.util.TClock;
 
+import javax.management.JMException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
 
 
 public abstract class TService<T> {
+    private static final ObjectMapper JOURNAL_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
     protected final ScheduledExecutorService executor;
+    protected volatile Executor jobExecutor;
     protected final JobConfig config;
     protected final TLogger tLogger;
     protected final FullNodeAPI nodeAPI;
     protected final WalletAPI walletAPI;
+    protected final FeeCoinPool feeCoinPool;
+    protected final AdaptiveJobSizer jobSizer;
+    protected final PushGate pushGate;
+    protected final TMetrics metrics = new TMetrics();
 
     protected volatile boolean stopped = true;
     protected volatile long lastTime;
     protected volatile ScheduledFuture<?> taskRef;
+    private boolean terminated;
+    private boolean closed;
 
-    protected final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+    protected final PriorityLaneQueue<T> queue;
+    protected volatile ItemJournal journal;
+    private boolean recovered;
+    protected final Set<Future<?>> activeJobs = ConcurrentHashMap.newKeySet();
 
     public TService(ScheduledExecutorService scheduledExecutor, JobConfig config, TLogger tLogger,
             FullNodeAPI nodeAPI, WalletAPI walletAPI) {
@@ -30,11 +56,166 @@ public abstract class TService<T> {
         this.tLogger = tLogger;
         this.nodeAPI = nodeAPI;
         this.walletAPI = walletAPI;
+        this.jobExecutor = initJobExecutor();
+        this.queue = new PriorityLaneQueue<>(config.maxQueueSize);
+        this.journal = openJournal();
+        this.jobSizer = new AdaptiveJobSizer(config);
+        this.pushGate = new PushGate(() -> config.maxConcurrentJobs);
+        this.feeCoinPool = FeeCoinPool.forWallet(walletAPI, config.feeWalletId);
+        feeCoinPool.attach(nodeAPI, config, tLogger, executor);
+        initMetrics();
+    }
+
+    // Jobs spend nearly all their time sleeping between RPC calls, on JDK 21+ they can be run on virtual
+    // threads so waiting jobs do not each pin a thread of the scheduled executor
+    private Executor initJobExecutor() {
+        if (!config.useVirtualThreads) { return executor; }
+        Optional<ExecutorService> virtualExecutor = JobExecutors.newVirtualThreadExecutor();
+        if (virtualExecutor.isEmpty()) {
+            tLogger.log(this.getClass(), TLogLevel.WARNING, "useVirtualThreads is enabled, but virtual threads " +
+                    "are not supported by this JVM (requires 21+), falling back to the service executor");
+            return executor;
+        }
+        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Running jobs on virtual threads");
+        return virtualExecutor.get();
+    }
+
+    // Called by start, re-opens what a previous terminate closed so a stopped service can be started again
+    protected synchronized void reopen() {
+        terminated = false;
+        if (!closed) { return; }
+        closed = false;
+        jobExecutor = initJobExecutor();
+        journal = openJournal();
+    }
+
+    // Jobs still in flight when the service is terminated keep running on the job executor and journaling, both
+    // are closed once the last of them completes. The service executor is the caller's and is left running
+    private synchronized void closeIfIdle() {
+        if (!terminated || closed || !activeJobs.isEmpty()) { return; }
+        closed = true;
+        if (jobExecutor != executor && jobExecutor instanceof ExecutorService service) { service.shutdown(); }
+        if (journal == null) { return; }
+        try {
+            journal.close(); // Forces the last group commit
+        } catch (IOException e) {
+            tLogger.log(this.getClass(), TLogLevel.ERROR, "Failed to close journal: " + config.journalDir, e);
+        }
+    }
+
+    private void initMetrics() {
+        metrics.gauge(TMetrics.Gauge.QUEUE_DEPTH, queue::size);
+        metrics.gauge(TMetrics.Gauge.IN_FLIGHT_JOBS, activeJobs::size);
+        metrics.gauge(TMetrics.Gauge.PREPARED_JOBS, pushGate::waitingCount);
+        metrics.gauge(TMetrics.Gauge.WATCHED_CONFIRMATIONS, ConfirmationTracker.forNode(nodeAPI)::watchedCount);
+        if (!config.jmxMetrics) { return; }
+        String name = config.jmxMetricsName != null ? config.jmxMetricsName : this.getClass().getName();
+        try {
+            if (!metrics.registerJmx(name)) {
+                tLogger.log(this.getClass(), TLogLevel.WARNING, () -> "Metrics not registered with JMX, name: " + name +
+                        " is already registered, set a unique jmxMetricsName per service");
+            }
+        } catch (JMException e) {
+            tLogger.log(this.getClass(), TLogLevel.WARNING, "Failed to register metrics with JMX", e);
+        }
+    }
+
+    private ItemJournal openJournal() {
+        if (config.journalDir == null || config.journalDir.isBlank()) { return null; }
+        try {
+            return ItemJournal.open(Path.of(config.journalDir), config.journalSegmentMb * 1024 * 1024);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open journal: " + config.journalDir, e);
+        }
     }
 
     public abstract void start();
 
-    public abstract boolean stopAndBlock();
+    // Unique key of an item in the journal
+    protected abstract String itemKey(T item);
+
+    protected abstract Class<T> itemClass();
+
+    // Re-launches a job that had pushed its bundle before a restart, from its journaled checkpoint
+    protected abstract void resumeJob(String jobId, List<T> items, JobCheckpoint checkpoint);
+
+    // Re-queues items and resumes jobs recovered from the journal, called once when the service starts
+    protected void recoverJournal() {
+        if (journal == null || recovered) { return; }
+        recovered = true;
+        ItemJournal.Recovery recovery = journal.recovery();
+        for (ItemJournal.PendingItem pending : recovery.pending()) {
+            queue.restore(readItem(pending), Priority.values()[pending.priority()], pending.deadline());
+        }
+        for (ItemJournal.InFlightJob job : recovery.inFlight()) {
+            List<T> items = job.items().stream().map(this::readItem).toList();
+            resumeJob(job.jobId(), items, JobCheckpoint.fromBytes(job.checkpoint()));
+        }
+        tLogger.event(this.getClass(), TLogLevel.INFO, "Journal recovered",
+                "Records", recovery.records(),
+                "Bytes", recovery.bytes(),
+                "Replay Time", recovery.replayMillis() + "ms",
+                "Items Re-queued", recovery.pending().size(),
+                "Jobs Resumed", recovery.inFlight().size());
+    }
+
+    private T readItem(ItemJournal.PendingItem pending) {
+        try {
+            return JOURNAL_MAPPER.readValue(pending.item(), itemClass());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read journaled item: " + pending.key(), e);
+        }
+    }
+
+    private byte[] writeItem(T item) {
+        try {
+            return JOURNAL_MAPPER.writeValueAsBytes(item);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to journal item: " + itemKey(item), e);
+        }
+    }
+
+    // Items are journaled before they are queued, so they are never in a batch the journal does not know of
+    private long journalSubmit(List<T> items, Priority priority, long deadline) {
+        long position = 0;
+        for (T item : items) {
+            position = journal.submit(itemKey(item), priority.ordinal(), deadline, writeItem(item));
+        }
+        return position;
+    }
+
+    // Override to handle what to do with failed items
+    protected abstract void onFail(List<T> items);
+
+    // Override if you have actions that need performed on finished items
+    protected abstract void onFinish(List<T> items);
+
+    // Blocks until the queue is drained and all in-flight jobs have completed
+    public boolean stopAndBlock() {
+        stopped = true;
+        boolean clean = true;
+        try {
+            while (!queue.isEmpty() || !activeJobs.isEmpty()) {
+                if (activeJobs.isEmpty()) {
+                    if (taskRef == null || taskRef.isDone()) { return false; } // Nothing left to drain the queue
+                    Thread.sleep(1000);
+                    continue;
+                }
+                for (Future<?> job : List.copyOf(activeJobs)) {
+                    try {
+                        job.get();  // This will block until the job is finished
+                    } catch (ExecutionException | CancellationException e) {
+                        clean = false;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        terminate();
+        return clean;
+    }
 
     public int stop() {
         stopped = true;
@@ -46,28 +227,184 @@ public abstract class TService<T> {
     }
 
     public void terminate() {
+        stopped = true; // Nothing is journaled after it is closed
         if (taskRef != null) {
             taskRef.cancel(true);
         }
+        synchronized (this) { terminated = true; }
+        closeIfIdle();
     }
 
     public int size() {
         return queue.size();
     }
 
+    public int activeJobCount() {
+        return activeJobs.size();
+    }
+
+    // Phase latencies, outcome counts and queue gauges of the service's jobs
+    public TMetrics metrics() {
+        return metrics;
+    }
+
+    // Free slots if maxQueueSize is set, Integer.MAX_VALUE if unbounded
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    public int size(Priority priority) {
+        return queue.size(priority);
+    }
+
     public boolean submit(T item) {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Received Item: " + item);
-        if (stopped) { return false; }
-        queue.add(item);
-        return true;
+        return submit(item, Priority.NORMAL, null);
     }
 
     public boolean submit(List<T> items) {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Received Items: " + items);
+        return submit(items, Priority.NORMAL, null);
+    }
+
+    public boolean submit(T item, Priority priority) {
+        return submit(item, priority, null);
+    }
+
+    public boolean submit(List<T> items, Priority priority) {
+        return submit(items, priority, null);
+    }
+
+    // Items due by the deadline are flushed in a partial batch ahead of it, with a raised starting fee
+    public boolean submit(T item, Priority priority, Instant deadline) {
+        tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Received Item: " + item +
+                " | Priority: " + priority + " | Deadline: " + deadline);
+        if (stopped) { return false; }
+        return submitItems(List.of(item), priority, deadline);
+    }
+
+    public boolean submit(List<T> items, Priority priority, Instant deadline) {
+        tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Received Items: " + items +
+                " | Priority: " + priority + " | Deadline: " + deadline);
         if (stopped) { return false; }
-        queue.addAll(items);
-        return true;
+        return submitItems(items, priority, deadline);
+    }
+
+    private boolean submitItems(List<T> items, Priority priority, Instant deadline) {
+        long deadlineMs = toEpochMs(deadline);
+        long position = journal != null ? journalSubmit(items, priority, deadlineMs) : 0;
+        boolean accepted = items.size() == 1
+                ? queue.offer(items.get(0), priority, deadlineMs, config.queueOverflowPolicy, config.queueOfferTimeoutMs)
+                : queue.offerAll(items, priority, deadlineMs, config.queueOverflowPolicy, config.queueOfferTimeoutMs);
+
+        if (!accepted) {
+            if (journal != null) { position = journal.drop(items.stream().map(this::itemKey).toList()); }
+            tLogger.event(this.getClass(), TLogLevel.WARNING, "Queue full, rejected items",
+                    "Items", items.size(),
+                    "Queued", queue.size() + "/" + queue.capacity(),
+                    "Policy", config.queueOverflowPolicy);
+        }
+        // Accepted items are durable once submit returns
+        if (journal != null) { journal.sync(position); }
+        return accepted;
     }
 
+    private static long toEpochMs(Instant deadline) {
+        return deadline == null ? PriorityLaneQueue.NO_DEADLINE : deadline.toEpochMilli();
+    }
+
+    // Items with a deadline before this are launched without waiting for a full batch
+    protected long dueBefore() {
+        return TClock.millis() + config.deadlineFlushSec * 1000L;
+    }
+
+    // Takes the next job's items, items close to their deadline first, then by lane priority. A job carrying
+    // items close to their deadline starts at no less than deadlineMinFeePerCost, and the job is given its earliest
+    // item deadline for the fee strategy. Empty if the queue was drained by the time it was polled, or an item counted
+    // by isEmpty is not yet in its lane, in which case the job must not be launched
+    protected List<T> pollJobItems(TJob job, int jobSize) {
+        long dueBefore = dueBefore();
+        List<PriorityLaneQueue.Queued<T>> batch = queue.pollBatch(jobSize, dueBefore);
+        if (batch.isEmpty()) { return List.of(); }
+        long deadline = batch.stream().mapToLong(PriorityLaneQueue.Queued::deadline).min()
+                .orElse(PriorityLaneQueue.NO_DEADLINE);
+        job.setDeadline(deadline);
+        if (deadline <= dueBefore) {
+            job.setStartFeePerCostFloor(config.deadlineMinFeePerCost);
+            tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + job.getJobId() +
+                    " | Carrying items near deadline, starting fee per cost raised to: " + config.deadlineMinFeePerCost);
+        }
+        List<T> items = batch.stream().map(PriorityLaneQueue.Queued::item).toList();
+        job.setMetrics(metrics);
+        job.setPushGate(pushGate);
+        // The fee rate lookup does not depend on the bundle, fetch the mempool while the job builds it
+        MempoolSnapshot.forNode(nodeAPI).refreshAsync(config.mempoolRefreshInterval, jobExecutor);
+        if (journal != null) {
+            journal.batch(job.getJobId(), items.stream().map(this::itemKey).toList());
+            job.setJournal(journal);
+        }
+        return items;
+    }
 
+    // Fixed jobSize, or sized from the cost of past bundles if adaptiveJobSize is enabled
+    protected int nextJobSize() {
+        return config.adaptiveJobSize ? jobSizer.jobSize() : config.jobSize;
+    }
+
+    // Up to prepareAhead jobs beyond maxConcurrentJobs are launched to prepare their bundles while the running
+    // jobs wait on confirmation, they push as running jobs finish
+    protected boolean hasJobCapacity() {
+        return activeJobs.size() < Math.max(1, config.maxConcurrentJobs) + Math.max(0, config.prepareAhead);
+    }
+
+    // Runs the job on the executor without blocking the calling (scheduler) thread, the job reports
+    // completion through its future which then routes the items to onFinish/onFail
+    protected <J extends TJob & Callable<Pair<Boolean, List<T>>>> void dispatchJob(J job, List<T> items) {
+        CompletableFuture<Pair<Boolean, List<T>>> future = new CompletableFuture<>();
+        trackJob(job, future, items);
+
+        try {
+            jobExecutor.execute(() -> {
+                try {
+                    future.complete(job.call());
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    // Tracks an already running job as in flight until its future completes
+    protected void trackJob(TJob job, CompletableFuture<Pair<Boolean, List<T>>> future, List<T> items) {
+        activeJobs.add(future);
+        future.whenComplete((rtn, ex) -> {
+            onJobComplete(job, items, rtn, ex);
+            activeJobs.remove(future);
+            closeIfIdle();
+        });
+    }
+
+    private void onJobComplete(TJob job, List<T> items, Pair<Boolean, List<T>> rtn, Throwable ex) {
+        try {
+            // Completed before the items are handed back, so a restart never delivers a job's items twice
+            if (journal != null) { journal.sync(journal.complete(job.getJobId())); }
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                tLogger.log(this.getClass(), TLogLevel.ERROR,
+                        () -> job.getClass().getSimpleName() + ": " + job.getJobId() + " Failed" +
+                                " | Exception: " + cause.getMessage(),
+                        cause instanceof Exception e ? e : new ExecutionException(cause));
+                metrics.increment(TMetrics.Counter.JOB_EXCEPTIONS);
+                onFail(items);
+            } else if (rtn.first()) {
+                metrics.increment(TMetrics.Counter.JOBS_SUCCEEDED);
+                onFinish(rtn.second());
+            } else {
+                metrics.increment(TMetrics.Counter.JOBS_FAILED);
+                onFail(rtn.second());
+            }
+        } catch (Exception e) {
+            tLogger.log(this.getClass(), TLogLevel.ERROR, () -> "Exception handling result of job: " + job.getJobId(), e);
+        }
+    }
 }
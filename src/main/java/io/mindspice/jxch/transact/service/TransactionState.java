@@ -4,6 +4,7 @@ import io.mindspice.jxch.rpc.schemas.object.Coin;
 import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
 
 import java.util.List;
+import java.util.NavigableMap;
 
 
 public class TransactionState {
@@ -13,9 +14,13 @@ public class TransactionState {
     public long feeAmount;
     public final Coin feeCoin;
     public boolean needReplaceFee = false;
+    // Set once any pushed bundle spent the fee coin, any of them may be the one that confirms
+    public boolean feeCoinPushed = false;
     public final SpendBundle transactionBundle;
     public SpendBundle aggBundle;
     public final List<Coin> jobCoins;
+    // Pre-signed bundles with the fee attached by fee per cost, null if the job has no ladder
+    public NavigableMap<Long, SpendBundle> feeLadder;
 
     public TransactionState(List<String> itemIds, long bundleCost, long feePerCost, long feeAmount,
             Coin feeCoin, SpendBundle transactionBundle, SpendBundle aggBundle, List<Coin> jobCoins) {
@@ -0,0 +1,159 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.rpc.http.WalletAPI;
+import io.mindspice.jxch.rpc.schemas.object.Coin;
+import io.mindspice.jxch.rpc.schemas.object.CoinRecord;
+import io.mindspice.jxch.rpc.util.ChiaUtils;
+import io.mindspice.jxch.rpc.util.RPCException;
+import io.mindspice.jxch.rpc.util.RequestUtils;
+import io.mindspice.jxch.transact.util.TClock;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+
+/*
+ Locally maintained index of a wallet's spendable coins ordered by amount, one per WalletAPI and wallet id.
+ It is seeded from the wallet once, kept current from job results (spent coins removed, change added) and only
+ re-synced from the wallet when older than the configured interval, so coin selection is an O(log n) floor/ceiling
+ lookup with no RPC on the hot path. Coins a job spent are remembered for a while so a lagging wallet cannot
+ re-add them on resync.
+ */
+public class WalletCoinIndex {
+    private static final Map<WalletAPI, Map<Integer, WalletCoinIndex>> INDEXES = new ConcurrentHashMap<>();
+    private static final long MIN_TOMBSTONE_MS = 600_000;
+
+    private final WalletAPI walletAPI;
+    private final int walletId;
+    private final ConcurrentSkipListMap<CoinKey, Coin> byAmount = new ConcurrentSkipListMap<>();
+    private final Map<String, CoinKey> byId = new ConcurrentHashMap<>();
+    private final Map<String, Long> spentTombstones = new ConcurrentHashMap<>();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private volatile long lastSync;
+    private volatile long tombstoneMs = MIN_TOMBSTONE_MS;
+
+
+    private record CoinKey(long amount, String coinId) implements Comparable<CoinKey> {
+        @Override
+        public int compareTo(CoinKey other) {
+            int cmp = Long.compare(amount, other.amount);
+            return cmp != 0 ? cmp : coinId.compareTo(other.coinId);
+        }
+    }
+
+    private WalletCoinIndex(WalletAPI walletAPI, int walletId) {
+        this.walletAPI = walletAPI;
+        this.walletId = walletId;
+    }
+
+    public static WalletCoinIndex forWallet(WalletAPI walletAPI, int walletId) {
+        return INDEXES.computeIfAbsent(walletAPI, api -> new ConcurrentHashMap<>())
+                .computeIfAbsent(walletId, id -> new WalletCoinIndex(walletAPI, id));
+    }
+
+    public int getWalletId() {
+        return walletId;
+    }
+
+    // Re-syncs from the wallet if the index is older than maxAgeMs, concurrent callers wait on a single resync
+    public WalletCoinIndex ensureFresh(long maxAgeMs) throws RPCException {
+        if (TClock.millis() - lastSync <= maxAgeMs) { return this; }
+        syncLock.lock();
+        try {
+            if (TClock.millis() - lastSync <= maxAgeMs) { return this; }
+            tombstoneMs = Math.max(MIN_TOMBSTONE_MS, maxAgeMs * 2);
+            resync();
+        } finally {
+            syncLock.unlock();
+        }
+        return this;
+    }
+
+    public void resync() throws RPCException {
+        var coinReq = new RequestUtils.SpendableCoinBuilder()
+                .setWalletId(walletId)
+                .build();
+
+        List<Coin> spendable = walletAPI.getSpendableCoins(coinReq)
+                .data().orElseThrow(TJob.dataExcept("WalletAPI.getSpendableCoins"))
+                .confirmedRecords()
+                .stream().filter(c -> !c.spent())
+                .map(CoinRecord::coin)
+                .toList();
+
+        long now = TClock.millis();
+        spentTombstones.values().removeIf(spentAt -> now - spentAt > tombstoneMs);
+
+        Map<String, Coin> current = new HashMap<>(spendable.size() * 2);
+        for (Coin coin : spendable) {
+            String coinId = ChiaUtils.getCoinId(coin);
+            if (!spentTombstones.containsKey(coinId)) { current.put(coinId, coin); }
+        }
+        for (String coinId : List.copyOf(byId.keySet())) {
+            if (!current.containsKey(coinId)) { removeById(coinId); }
+        }
+        current.forEach((coinId, coin) -> {
+            if (!byId.containsKey(coinId)) { put(coinId, coin); }
+        });
+        lastSync = now;
+    }
+
+    public void add(Coin coin) {
+        String coinId = ChiaUtils.getCoinId(coin);
+        if (spentTombstones.containsKey(coinId)) { return; }
+        put(coinId, coin);
+    }
+
+    public void markSpent(Coin coin) {
+        String coinId = ChiaUtils.getCoinId(coin);
+        spentTombstones.put(coinId, TClock.millis());
+        removeById(coinId);
+    }
+
+    public void markSpent(Collection<Coin> coins) {
+        coins.forEach(this::markSpent);
+    }
+
+    // Coins with an amount >= minAmount, smallest first
+    public Collection<Coin> ascendingFrom(long minAmount) {
+        return byAmount.tailMap(new CoinKey(minAmount, ""), true).values();
+    }
+
+    // All coins, largest first
+    public Collection<Coin> descending() {
+        return byAmount.descendingMap().values();
+    }
+
+    // Coins largest first, copied into a list skipping those whose coin id matches the filter
+    public List<Coin> descending(Predicate<String> skipCoinId) {
+        List<Coin> coins = new ArrayList<>(byId.size());
+        for (var entry : byAmount.descendingMap().entrySet()) {
+            if (!skipCoinId.test(entry.getKey().coinId())) { coins.add(entry.getValue()); }
+        }
+        return coins;
+    }
+
+    public Optional<Coin> ceiling(long minAmount) {
+        var entry = byAmount.ceilingEntry(new CoinKey(minAmount, ""));
+        return entry == null ? Optional.empty() : Optional.of(entry.getValue());
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    private void put(String coinId, Coin coin) {
+        CoinKey key = new CoinKey(coin.amount(), coinId);
+        if (byId.putIfAbsent(coinId, key) == null) {
+            byAmount.put(key, coin);
+        }
+    }
+
+    private void removeById(String coinId) {
+        CoinKey key = byId.remove(coinId);
+        if (key != null) { byAmount.remove(key); }
+    }
+}
@@ -0,0 +1,58 @@
+package io.mindspice.jxch.transact.service;
+
+import io.mindspice.jxch.rpc.http.WalletAPI;
+import io.mindspice.jxch.rpc.util.RPCException;
+import io.mindspice.jxch.transact.util.TClock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/*
+ Shared wallet sync status, one per WalletAPI. Jobs read the cached status instead of calling get_sync_status
+ themselves, it is re-polled at most once per interval no matter how many jobs are waiting on it. Jobs waiting on a
+ resync re-check at the same short interval, so they resume within one interval of the wallet syncing.
+ Polling is lazy on read like MempoolSnapshot, concurrent callers wait on a single refresh.
+ */
+public class WalletSyncWatcher {
+    private static final Map<WalletAPI, WalletSyncWatcher> WATCHERS = new ConcurrentHashMap<>();
+
+    private final WalletAPI walletAPI;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile boolean synced;
+    private volatile long lastPoll;
+
+
+    private WalletSyncWatcher(WalletAPI walletAPI) {
+        this.walletAPI = walletAPI;
+    }
+
+    public static WalletSyncWatcher forWallet(WalletAPI walletAPI) {
+        return WATCHERS.computeIfAbsent(walletAPI, WalletSyncWatcher::new);
+    }
+
+    // Sync status no older than maxAgeMs, polling the wallet if needed
+    public boolean isSynced(long maxAgeMs) throws RPCException {
+        refresh(maxAgeMs);
+        return synced;
+    }
+
+    public void refresh(long maxAgeMs) throws RPCException {
+        if (TClock.millis() - lastPoll <= maxAgeMs) { return; }
+        refreshLock.lock();
+        try {
+            // Another caller may have polled while this one waited on the lock
+            if (TClock.millis() - lastPoll <= maxAgeMs) { return; }
+            poll();
+        } finally {
+            lastPoll = TClock.millis();
+            refreshLock.unlock();
+        }
+    }
+
+    private void poll() throws RPCException {
+        synced = walletAPI.getSyncStatus().data()
+                .orElseThrow(TJob.dataExcept("WalletAPI.getSyncStatus")).synced();
+    }
+}
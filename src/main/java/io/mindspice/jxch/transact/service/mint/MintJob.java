@@ -1,6 +1,8 @@
 package io.mindspice.jxch.transact.service.mint;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import io.mindspice.jxch.rpc.http.FullNodeAPI;
 import io.mindspice.jxch.rpc.http.WalletAPI;
@@ -13,28 +15,42 @@ import io.mindspice.jxch.rpc.util.ChiaUtils;
 import io.mindspice.jxch.rpc.util.RPCException;
 import io.mindspice.jxch.rpc.util.RequestUtils;
 import io.mindspice.jxch.rpc.util.bech32.AddressUtil;
-import io.mindspice.jxch.transact.service.ExcludedCoinRepo;
+import io.mindspice.jxch.transact.service.JobCheckpoint;
 import io.mindspice.jxch.transact.service.TJob;
 import io.mindspice.jxch.transact.logging.TLogLevel;
 import io.mindspice.jxch.transact.logging.TLogger;
+import io.mindspice.jxch.transact.metrics.TMetrics;
 
 import io.mindspice.jxch.transact.service.TransactionState;
 import io.mindspice.jxch.transact.settings.JobConfig;
 import io.mindspice.jxch.transact.util.Pair;
+import io.mindspice.jxch.transact.util.TClock;
 
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.*;
 
 
 public class MintJob extends TJob implements Callable<Pair<Boolean, List<MintItem>>> {
     private final List<MintItem> mintItems;
+    private List<String> mintIds;
+    private List<String> nftList;
 
     public MintJob(JobConfig config, TLogger tLogger, FullNodeAPI nodeAPI, WalletAPI walletAPI) {
         super(config, tLogger, nodeAPI, walletAPI);
         mintItems = new CopyOnWriteArrayList<>();
     }
 
+    // Rebuilds a job that had pushed its bundle before a restart from its journaled checkpoint
+    public static MintJob resume(JobConfig config, TLogger tLogger, FullNodeAPI nodeAPI, WalletAPI walletAPI,
+            String jobId, List<MintItem> mintItems, JobCheckpoint checkpoint) {
+        MintJob job = new MintJob(config, tLogger, nodeAPI, walletAPI);
+        job.mintItems.addAll(mintItems);
+        job.mintIds = checkpoint.itemIds();
+        job.nftList = checkpoint.nftIds();
+        job.restore(jobId, checkpoint);
+        return job;
+    }
+
     public void addMintItem(List<MintItem> mintItems) {
         if (state != State.INIT) { throw new IllegalStateException("Cannot add items after starting."); }
         this.mintItems.addAll(mintItems);
@@ -47,97 +63,116 @@ public class MintJob extends TJob implements Callable<Pair<Boolean, List<MintIte
 
     @Override
     public Pair<Boolean, List<MintItem>> call() throws Exception {
-        List<String> mintIds = mintItems.stream().map(MintItem::uuid).toList();
-        tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                " | Started Mint Job for NFT UUIDs: " + mintIds);
         try {
-            Pair<NftBundle, Coin> mintData;
-            try {
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId
-                        + " | Acquiring excluded coins semaphore");
-                ExcludedCoinRepo.getSemaphore().acquire();
-                mintData = getMintBundle();
-                excludedCoins.add(mintData.second());
-            } finally {
-                ExcludedCoinRepo.getSemaphore().release();
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId
-                        + " | Released excluded coins semaphore");
-            }
+            if (!resumed) { prepare(); }
+            return complete(transactionLoop(tState));
+        } catch (Exception ex) {
+            onException(ex);
+            throw ex;
+        }
+    }
 
-            List<String> nftList = mintData.first().nftIdList();
-            SpendBundle nftSpendBundle = mintData.first().spendBundle();
-            Coin mintCoin = mintData.second();
-
-            long bundleCost = getSpendCost(nftSpendBundle);
-            long feePerCost = getFeePerCostNeeded(bundleCost);
-            if (feePerCost > 0) { feePerCost = Math.max(Math.max(feePerCost, 5), config.minFeePerCost); }
-            feePerCost = Math.min(feePerCost, config.maxFeePerCost);
-            long feeAmount = feePerCost * bundleCost;
-
-            // Get max so coin can be reused for all fee calculations
-            Coin feeCoin;
-            try {
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId
-                        + " | Acquiring excluded coins semaphore");
-                ExcludedCoinRepo.getSemaphore().acquire();
-                feeCoin = getFeeCoin(bundleCost * config.maxFeePerCost, new ArrayList<>(excludedCoins));
-                excludedCoins.add(feeCoin);
-            } finally {
-                ExcludedCoinRepo.getSemaphore().release();
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId
-                        + " | Released excluded coins semaphore");
-            }
+    // Prepares the bundle on the executor, then drives the transaction engine on the scheduler without
+    // holding a thread while waiting
+    public CompletableFuture<Pair<Boolean, List<MintItem>>> callAsync(Executor executor,
+            ScheduledExecutorService scheduler) {
+        CompletableFuture<Void> prepared;
+        try {
+            prepared = resumed ? CompletableFuture.completedFuture(null) : CompletableFuture.runAsync(() -> {
+                try {
+                    prepare();
+                } catch (Exception ex) {
+                    throw new CompletionException(ex);
+                }
+            }, executor);
+        } catch (RejectedExecutionException ex) {
+            prepared = CompletableFuture.failedFuture(ex);
+        }
+        return prepared
+                .thenCompose(v -> transactionLoopAsync(tState, scheduler))
+                .handle((success, ex) -> {
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        onException(cause instanceof Exception e ? e : new ExecutionException(cause));
+                        throw new CompletionException(cause);
+                    }
+                    return complete(success);
+                });
+    }
 
-            tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId + " | Fee coin Parent: " + ChiaUtils.getCoinId(feeCoin));
+    private void prepare() throws Exception {
+        mintIds = mintItems.stream().map(MintItem::uuid).toList();
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Started Mint Job for NFT UUIDs: " + mintIds);
 
-            SpendBundle aggBundle;
-            if (feeAmount != 0) {
-                SpendBundle feeBundle = getFeeBundle(feeCoin, feeAmount);
-                aggBundle = walletAPI.aggregateSpends(List.of(nftSpendBundle, feeBundle))
-                        .data().orElseThrow(dataExcept("WalletAPI.aggregateSpends"));
-            } else {
-                aggBundle = nftSpendBundle;
-            }
+        long buildStart = TClock.nanoTime();
+        Pair<NftBundle, Coin> mintData = getMintBundle();
+        metrics.recordSince(TMetrics.Timer.BUNDLE_BUILD, buildStart);
 
-            state = State.STARTED;
-
-            tState = new TransactionState(
-                    mintItems.stream().map(MintItem::uuid).toList(),
-                    bundleCost,
-                    feePerCost,
-                    feeAmount,
-                    feeCoin,
-                    nftSpendBundle,
-                    aggBundle,
-                    List.of(mintCoin)
-            );
-            boolean success = transactionLoop(tState);
-            if (!success) {
-                tLogger.log(this.getClass(), TLogLevel.FAILED, "Job: " + jobId +
-                        " | Status: Total Failure" +
-                        " | Reason: All iteration failed.");
-                state = State.FAILED;
-            }
-            excludedCoins.remove(tState.feeCoin);
-            tState.jobCoins.forEach(excludedCoins::remove);
-            return new Pair<>(success, success ? getReturn(nftList) : mintItems);
+        nftList = mintData.first().nftIdList();
+        SpendBundle nftSpendBundle = mintData.first().spendBundle();
+        Coin mintCoin = mintData.second();
 
-        } catch (Exception ex) {
-            tLogger.log(this.getClass(), TLogLevel.FAILED, "Job: " + jobId +
-                    " | Exception: " + ex.getMessage() +
-                    " | Failed UUIDs: " + mintIds, ex);
-            state = State.EXCEPTION;
-            if (tState != null) {
-                excludedCoins.remove(tState.feeCoin);
-                tState.jobCoins.forEach(excludedCoins::remove);
-            }
-            throw ex;
+        long bundleCost = getSpendCost(nftSpendBundle);
+        recordBundleCost(mintItems.size(), bundleCost);
+        long feePerCost = initialFeePerCost(bundleCost);
+        long feeAmount = feePerCost * bundleCost;
+
+        // Get max so coin can be reused for all fee calculations
+        Coin feeCoin = getFeeCoin(bundleCost * config.maxFeePerCost);
+
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId + " | Fee coin Parent: " + ChiaUtils.getCoinId(feeCoin));
+
+        SpendBundle aggBundle;
+        if (feeAmount != 0) {
+            SpendBundle feeBundle = getFeeBundle(feeCoin, feeAmount);
+            aggBundle = aggregateSpends(List.of(nftSpendBundle, feeBundle));
+        } else {
+            aggBundle = nftSpendBundle;
+        }
+
+        setState(State.STARTED);
+
+        tState = new TransactionState(
+                mintIds,
+                bundleCost,
+                feePerCost,
+                feeAmount,
+                feeCoin,
+                nftSpendBundle,
+                aggBundle,
+                List.of(mintCoin)
+        );
+        if (config.feeLadderSteps > 0) { buildFeeLadder(); }
+    }
+
+    private Pair<Boolean, List<MintItem>> complete(boolean success) {
+        if (!success) {
+            tLogger.log(this.getClass(), TLogLevel.FAILED, () -> "Job: " + jobId +
+                    " | Status: Total Failure" +
+                    " | Reason: All iteration failed.");
+            setState(State.FAILED);
         }
+        if (success) { markCoinsSpent(); }
+        releaseCoins();
+        return new Pair<>(success, success ? getReturn(nftList) : mintItems);
+    }
+
+    private void onException(Exception ex) {
+        tLogger.log(this.getClass(), TLogLevel.FAILED, () -> "Job: " + jobId +
+                " | Exception: " + ex.getMessage() +
+                " | Failed UUIDs: " + mintIds, ex);
+        setState(State.EXCEPTION);
+        releaseCoins();
+    }
+
+    @Override
+    protected JobCheckpoint checkpoint() {
+        return super.checkpoint().withNftIds(nftList);
     }
 
     private Pair<NftBundle, Coin> getMintBundle() throws Exception {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: GettingMintBundle");
+        logAction("GettingMintBundle");
         var metaData = new ArrayList<MetaData>();
         var targets = new ArrayList<String>();
         var total = 0;
@@ -156,20 +191,19 @@ public class MintJob extends TJob implements Callable<Pair<Boolean, List<MintIte
         }
 
         Coin mintCoin = getFundingCoin(total);
-        tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId + " | Funding coin selected: "
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId + " | Funding coin selected: "
                 + ChiaUtils.getCoinId(mintCoin));
         RequestUtils.BulkMintBuilder bulkMintbuilder = new RequestUtils.BulkMintBuilder()
                 .setMintTotal(total)
                 .addTargetAddress(targets)
                 .addMetaData(metaData)
-                .addXchCoin(mintCoin.puzzleHash())
                 .setReusePuzHash(true)
                 .setChangeTarget(config.changeTarget)
                 .setWalletId(config.mintWalletId);
         if (config.mintFromDid) {
             bulkMintbuilder.mintFromDid(true);
             Coin didCoin = getDidCoin();
-            tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId + " | Did coin selected: "
+            tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId + " | Did coin selected: "
                     + ChiaUtils.getCoinId(didCoin));
             bulkMintbuilder.addDidCoin(didCoin);
         }
@@ -179,48 +213,51 @@ public class MintJob extends TJob implements Callable<Pair<Boolean, List<MintIte
         }
 
         JsonNode bulkMintReq = bulkMintbuilder.build();
+        // Funded from exactly the reserved coin, given only its puzzle hash the wallet can fund the mint from any
+        // coin at it, including one another job has reserved and is watching for confirmation
+        ((ObjectNode) bulkMintReq).putArray("xch_coins").add(coinJson(mintCoin));
         ApiResponse<NftBundle> nftBundle = walletAPI.nftMintBulk(bulkMintReq);
 
         if (!nftBundle.success()) {
             throw new IllegalStateException("Failed To Get Spend Bundle Via RPC: " + nftBundle.error());
         }
-        return new Pair<>(nftBundle.data().orElseThrow(dataExcept("WalletAPI.nftBulkMint")), mintCoin);
+        NftBundle bundle = nftBundle.data().orElseThrow(dataExcept("WalletAPI.nftBulkMint"));
+        String mintCoinId = ChiaUtils.getCoinId(mintCoin);
+        boolean spendsMintCoin = bundle.spendBundle().coinSpends().stream()
+                .anyMatch(spend -> ChiaUtils.getCoinId(spend.coin()).equals(mintCoinId));
+        if (!spendsMintCoin) {
+            throw new IllegalStateException("Mint bundle does not spend the reserved funding coin: " + mintCoinId);
+        }
+        return new Pair<>(bundle, mintCoin);
+    }
+
+    // A coin as nft_mint_bulk reads it from xch_coins
+    private static ObjectNode coinJson(Coin coin) {
+        return JsonNodeFactory.instance.objectNode()
+                .put("parent_coin_info", coin.parentCoinInfo())
+                .put("puzzle_hash", coin.puzzleHash())
+                .put("amount", coin.amount());
     }
 
     private Coin getFundingCoin(int amount) throws RPCException {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: GettingFundingCoin");
-        var jsonNode = new RequestUtils.SpendableCoinBuilder()
-                .setMinCoinAmount(amount)
-                .setWalletId(config.fundWalletId)
-                .build();
-
-        return walletAPI.getSpendableCoins(jsonNode)
-                .data()
-                .orElseThrow(dataExcept("WalletAPI.getSpendableCoins"))
-                .confirmedRecords()
-                .stream().sorted(Comparator.comparing(c -> c.coin().amount()))
-                .toList()
-                .get(0).coin();
+        logAction("GettingFundingCoin");
+        return selectCoin(config.fundWalletId, amount);
     }
 
     private Coin getDidCoin() throws RPCException {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: GetDIDCoin:didGetDID");
+        logAction("GetDIDCoin:didGetDID");
 
         String didCoinId = walletAPI.didGetDID(config.didWalletId)
                 .data()
                 .orElseThrow(dataExcept("WalletAPI.didGetDID"))
                 .coinId();
 
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: GettingDIDCoin:didGetInfo");
+        logAction("GettingDIDCoin:didGetInfo");
 
         var currDidCoin = walletAPI.didGetInfo(didCoinId).data()
                 .orElseThrow(dataExcept("WalletAPI.didGetInfo")).latestCoin();
 
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: GettingDIDCoin:getCoinRecordsByName");
+        logAction("GettingDIDCoin:getCoinRecordsByName");
         var coinReq = nodeAPI.getCoinRecordByName(currDidCoin);
         return coinReq.data().orElseThrow(dataExcept("WalletAPI.getCoinRecordsByName")).coin();
     }
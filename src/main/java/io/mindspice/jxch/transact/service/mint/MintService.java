@@ -2,29 +2,27 @@ package io.mindspice.jxch.transact.service.mint;
 
 import io.mindspice.jxch.rpc.http.FullNodeAPI;
 import io.mindspice.jxch.rpc.http.WalletAPI;
+import io.mindspice.jxch.transact.service.JobCheckpoint;
 import io.mindspice.jxch.transact.service.TService;
 import io.mindspice.jxch.transact.logging.TLogLevel;
 import io.mindspice.jxch.transact.logging.TLogger;
 import io.mindspice.jxch.transact.settings.JobConfig;
-import io.mindspice.jxch.transact.util.Pair;
+import io.mindspice.jxch.transact.util.TClock;
 
-import java.time.Instant;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.*;
-import java.util.stream.IntStream;
 
 
 public abstract class MintService extends TService<MintItem> implements Runnable {
 
-    protected volatile Future<Pair<Boolean, List<MintItem>>> currentJob;
-
     public MintService(ScheduledExecutorService scheduledExecutor, JobConfig config, TLogger tLogger,
             FullNodeAPI nodeAPI, WalletAPI walletAPI) {
         super(scheduledExecutor, config, tLogger, nodeAPI, walletAPI);
     }
 
     public void start() {
+        reopen();
+        recoverJournal();
         stopped = false;
         taskRef = executor.scheduleAtFixedRate(
                 this,
@@ -32,62 +30,69 @@ public abstract class MintService extends TService<MintItem> implements Runnable
                 config.queueCheckInterval,
                 TimeUnit.SECONDS
         );
-        lastTime = Instant.now().getEpochSecond();
-    }
-
-    @Override
-    public boolean stopAndBlock() {
-        stopped = true;
-        while (!queue.isEmpty()) {
-            if (currentJob != null) {
-                try {
-                    currentJob.get();  // This will block until the current job is finished
-                    return true;
-                } catch (InterruptedException | ExecutionException e) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        lastTime = TClock.epochSecond();
     }
 
     // Override to handle what to do with failed mints
+    @Override
     protected abstract void onFail(List<MintItem> mintItems);
 
     // Override if you have actions that need performed on finished mints
     // returns the original items, as well as their on chain NFT Ids
+    @Override
     protected abstract void onFinish(List<MintItem> mintItemsWithIds);
 
+    @Override
+    protected String itemKey(MintItem item) {
+        return item.uuid();
+    }
+
+    @Override
+    protected Class<MintItem> itemClass() {
+        return MintItem.class;
+    }
+
+    @Override
+    protected void resumeJob(String jobId, List<MintItem> mintItems, JobCheckpoint checkpoint) {
+        MintJob mintJob = MintJob.resume(config, tLogger, nodeAPI, walletAPI, jobId, mintItems, checkpoint);
+        mintJob.setJobSizer(jobSizer);
+        mintJob.setJournal(journal);
+        mintJob.setMetrics(metrics);
+        if (config.nonBlockingEngine) {
+            trackJob(mintJob, mintJob.callAsync(jobExecutor, executor), mintItems);
+        } else {
+            dispatchJob(mintJob, mintItems);
+        }
+    }
+
     public void run() {
+        // Tops up the fee coin pool in the background whenever it runs low, no-op if the pool is disabled
+        feeCoinPool.maintain();
+
         try {
             if (queue.isEmpty()) {
                 if (stopped) { terminate(); } else { return; }
             }
             tLogger.log(this.getClass(), TLogLevel.DEBUG, "Checking Queue");
 
-            long nowTime = Instant.now().getEpochSecond();
-            if (queue.size() >= config.jobSize || nowTime - lastTime >= config.queueMaxWaitSec) {
+            long nowTime = TClock.epochSecond();
+            // Keep up to maxConcurrentJobs in flight, jobs report back through their future so this never blocks
+            int jobSize = nextJobSize();
+            while (hasJobCapacity() && !queue.isEmpty()
+                    && (queue.size() >= jobSize || nowTime - lastTime >= config.queueMaxWaitSec
+                    || queue.hasDueBefore(dueBefore()))) {
                 lastTime = nowTime;
 
                 MintJob mintJob = new MintJob(config, tLogger, nodeAPI, walletAPI);
-                List<MintItem> mintItems = IntStream.range(0, Math.min(config.jobSize, queue.size()))
-                        .mapToObj(i -> queue.poll())
-                        .filter(Objects::nonNull).toList();
+                List<MintItem> mintItems = pollJobItems(mintJob, jobSize);
+                if (mintItems.isEmpty()) { break; }
 
                 mintJob.addMintItem(mintItems);
-                try {
-                    currentJob = executor.submit(mintJob);
-                    var mintReturn = currentJob.get();
-                    if (mintReturn.first()) {
-                        onFinish(mintReturn.second());
-                    } else {
-                        onFail(mintReturn.second());
-                    }
-                } catch (Exception ex) {
-                    tLogger.log(this.getClass(), TLogLevel.ERROR,
-                            "MintJob: " + mintJob.getJobId() + " Failed" +
-                                    " | Exception: " + ex.getMessage(), ex);
-                    onFail(mintItems);
+                mintJob.setJobSizer(jobSizer);
+                if (config.nonBlockingEngine) {
+                    trackJob(mintJob, mintJob.callAsync(jobExecutor, executor), mintItems);
+                } else {
+                    dispatchJob(mintJob, mintItems);
                 }
             }
         } catch (Exception e) {
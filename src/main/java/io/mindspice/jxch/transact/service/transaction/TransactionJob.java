@@ -5,28 +5,32 @@ import com.fasterxml.jackson.databind.JsonNode;
 import io.mindspice.jxch.rpc.http.FullNodeAPI;
 import io.mindspice.jxch.rpc.http.WalletAPI;
 import io.mindspice.jxch.rpc.schemas.object.Coin;
-import io.mindspice.jxch.rpc.schemas.object.CoinRecord;
 import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
 import io.mindspice.jxch.rpc.schemas.wallet.Addition;
 import io.mindspice.jxch.rpc.schemas.wallet.SignedTransaction;
 import io.mindspice.jxch.rpc.util.ChiaUtils;
 import io.mindspice.jxch.rpc.util.RPCException;
 import io.mindspice.jxch.rpc.util.RequestUtils;
-import io.mindspice.jxch.transact.service.ExcludedCoinRepo;
+import io.mindspice.jxch.transact.service.CoinSelector;
+import io.mindspice.jxch.transact.service.JobCheckpoint;
 import io.mindspice.jxch.transact.service.TJob;
 import io.mindspice.jxch.transact.logging.TLogLevel;
 import io.mindspice.jxch.transact.logging.TLogger;
+import io.mindspice.jxch.transact.metrics.TMetrics;
 import io.mindspice.jxch.transact.service.TransactionState;
+import io.mindspice.jxch.transact.service.WalletCoinIndex;
 import io.mindspice.jxch.transact.settings.JobConfig;
 import io.mindspice.jxch.transact.util.Pair;
+import io.mindspice.jxch.transact.util.TClock;
 
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 
 public class TransactionJob extends TJob implements Callable<Pair<Boolean, List<TransactionItem>>> {
+    private static final int COIN_SELECT_ATTEMPTS = 3;
+
     private final List<TransactionItem> txItems;
 
     private List<Coin> parentCoins;
@@ -42,6 +46,17 @@ public class TransactionJob extends TJob implements Callable<Pair<Boolean, List<
         txItems.add(transactionItem);
     }
 
+    // Rebuilds a job that had pushed its bundle before a restart from its journaled checkpoint
+    public static TransactionJob resume(JobConfig config, TLogger tLogger, FullNodeAPI nodeAPI, WalletAPI walletAPI,
+            String jobId, List<TransactionItem> txItems, JobCheckpoint checkpoint) {
+        TransactionJob job = new TransactionJob(config, tLogger, nodeAPI, walletAPI);
+        job.txItems.addAll(txItems);
+        job.parentCoins = checkpoint.jobCoins();
+        job.createdCoins = checkpoint.createdCoins();
+        job.restore(jobId, checkpoint);
+        return job;
+    }
+
     public void addTransaction(List<TransactionItem> transactionItem) {
         if (state != State.INIT) { throw new IllegalStateException("Cannot add items after starting."); }
         txItems.addAll(transactionItem);
@@ -59,126 +74,147 @@ public class TransactionJob extends TJob implements Callable<Pair<Boolean, List<
 
     @Override
     public Pair<Boolean, List<TransactionItem>> call() throws Exception {
-        tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                " | Started Transaction Job for Additions: " + txItems);
         try {
-            Pair<SpendBundle, List<Coin>> txData;
-            try {
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId
-                        + " | Acquiring excluded coins semaphore");
-                ExcludedCoinRepo.getSemaphore().acquire();
-                txData = getAssetBundle();
-                excludedCoins.addAll(txData.second());
-            } finally {
-                ExcludedCoinRepo.getSemaphore().release();
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId
-                        + " | Released excluded coins semaphore");
-            }
+            if (!resumed) { prepare(); }
+            return complete(transactionLoop(tState));
+        } catch (Exception ex) {
+            onException(ex);
+            throw ex;
+        }
+    }
 
-            SpendBundle assetBundle = txData.first();
-            List<Coin> jobCoins = txData.second();
-            long bundleCost = getSpendCost(assetBundle);
-            long feePerCost = getFeePerCostNeeded(bundleCost);
-            if (feePerCost > 0) { feePerCost = Math.max(Math.max(feePerCost, 5), config.minFeePerCost); }
-            feePerCost = Math.min(feePerCost, config.maxFeePerCost);
-            long feeAmount = feePerCost * bundleCost;
-
-            // Get max so coin can be reused for all fee calculations
-
-            Coin feeCoin;
-            try {
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId
-                        + " | Acquiring excluded coins semaphore");
-                ExcludedCoinRepo.getSemaphore().acquire();
-                feeCoin = getFeeCoin(bundleCost * config.maxFeePerCost, new ArrayList<>(excludedCoins));
-                excludedCoins.add(feeCoin);
-            } finally {
-                tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId
-                        + " | Released excluded coins semaphore");
-                ExcludedCoinRepo.getSemaphore().release();
-            }
+    // Prepares the bundle on the executor, then drives the transaction engine on the scheduler without
+    // holding a thread while waiting
+    public CompletableFuture<Pair<Boolean, List<TransactionItem>>> callAsync(Executor executor,
+            ScheduledExecutorService scheduler) {
+        CompletableFuture<Void> prepared;
+        try {
+            prepared = resumed ? CompletableFuture.completedFuture(null) : CompletableFuture.runAsync(() -> {
+                try {
+                    prepare();
+                } catch (Exception ex) {
+                    throw new CompletionException(ex);
+                }
+            }, executor);
+        } catch (RejectedExecutionException ex) {
+            prepared = CompletableFuture.failedFuture(ex);
+        }
+        return prepared
+                .thenCompose(v -> transactionLoopAsync(tState, scheduler))
+                .handle((success, ex) -> {
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        onException(cause instanceof Exception e ? e : new ExecutionException(cause));
+                        throw new CompletionException(cause);
+                    }
+                    return complete(success);
+                });
+    }
 
-            SpendBundle aggBundle;
-            if (feeAmount != 0) {
-                SpendBundle feeBundle = getFeeBundle(feeCoin, feeAmount);
-                aggBundle = walletAPI.aggregateSpends(List.of(assetBundle, feeBundle))
-                        .data().orElseThrow(dataExcept("WalletAPI.aggregateSpends"));
-            } else {
-                aggBundle = assetBundle;
-            }
+    private void prepare() throws Exception {
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Started Transaction Job for Additions: " + txItems);
 
-            tLogger.log(this.getClass(), TLogLevel.INFO, "Job: " + jobId +
-                    " | Parent Coins: " + parentCoins.stream().map(ChiaUtils::getCoinId).toList() +
-                    " | Fee Coin Parent: " + feeCoin.parentCoinInfo());
-
-            state = State.STARTED;
-
-            tState = new TransactionState(
-                    txItems.stream().map(TransactionItem::uuid).toList(),
-                    bundleCost,
-                    feePerCost,
-                    feeAmount,
-                    feeCoin,
-                    assetBundle,
-                    aggBundle,
-                    jobCoins
-            );
-            boolean success = transactionLoop(tState);
-            if (!success) {
-                tLogger.log(this.getClass(), TLogLevel.FAILED, "Job: " + jobId +
-                        " | Status: Total Failure" +
-                        " | Reason: All iteration failed.");
-                state = State.FAILED;
-            }
-            excludedCoins.remove(tState.feeCoin);
-            tState.jobCoins.forEach(excludedCoins::remove);
-            return new Pair<>(success, success ? getReturn(createdCoins) : txItems);
+        long buildStart = TClock.nanoTime();
+        Pair<SpendBundle, List<Coin>> txData = getAssetBundle();
+        metrics.recordSince(TMetrics.Timer.BUNDLE_BUILD, buildStart);
+
+        SpendBundle assetBundle = txData.first();
+        List<Coin> jobCoins = txData.second();
+        long bundleCost = getSpendCost(assetBundle);
+        recordBundleCost(txItems.size(), bundleCost);
+        long feePerCost = initialFeePerCost(bundleCost);
+        long feeAmount = feePerCost * bundleCost;
+
+        // Get max so coin can be reused for all fee calculations
+        Coin feeCoin = getFeeCoin(bundleCost * config.maxFeePerCost);
+
+        SpendBundle aggBundle;
+        if (feeAmount != 0) {
+            SpendBundle feeBundle = getFeeBundle(feeCoin, feeAmount);
+            aggBundle = aggregateSpends(List.of(assetBundle, feeBundle));
+        } else {
+            aggBundle = assetBundle;
+        }
 
-        } catch (Exception ex) {
-            tLogger.log(this.getClass(), TLogLevel.FAILED, "Job: " + jobId +
-                    " | Exception: " + ex.getMessage() +
-                    " | Failed Transaction Items: " + txItems, ex);
-            state = State.EXCEPTION;
-            if (tState != null) {
-                excludedCoins.remove(tState.feeCoin);
-                tState.jobCoins.forEach(excludedCoins::remove);
-            }
-            throw ex;
+        tLogger.log(this.getClass(), TLogLevel.INFO, () -> "Job: " + jobId +
+                " | Parent Coins: " + parentCoins.stream().map(ChiaUtils::getCoinId).toList() +
+                " | Fee Coin Parent: " + feeCoin.parentCoinInfo());
+
+        setState(State.STARTED);
+
+        tState = new TransactionState(
+                txItems.stream().map(TransactionItem::uuid).toList(),
+                bundleCost,
+                feePerCost,
+                feeAmount,
+                feeCoin,
+                assetBundle,
+                aggBundle,
+                jobCoins
+        );
+        if (config.feeLadderSteps > 0) { buildFeeLadder(); }
+    }
+
+    private Pair<Boolean, List<TransactionItem>> complete(boolean success) {
+        if (!success) {
+            tLogger.log(this.getClass(), TLogLevel.FAILED, () -> "Job: " + jobId +
+                    " | Status: Total Failure" +
+                    " | Reason: All iteration failed.");
+            setState(State.FAILED);
         }
+        if (success) {
+            markCoinsSpent();
+            // Change returned to the funding wallet can be selected by following jobs without a resync
+            WalletCoinIndex fundIndex = WalletCoinIndex.forWallet(walletAPI, config.fundWalletId);
+            createdCoins.stream()
+                    .filter(c -> isChangeTarget(c.puzzleHash()))
+                    .forEach(fundIndex::add);
+        }
+        releaseCoins();
+        return new Pair<>(success, success ? getReturn(createdCoins) : txItems);
+    }
+
+    private void onException(Exception ex) {
+        tLogger.log(this.getClass(), TLogLevel.FAILED, () -> "Job: " + jobId +
+                " | Exception: " + ex.getMessage() +
+                " | Failed Transaction Items: " + txItems, ex);
+        setState(State.EXCEPTION);
+        releaseCoins();
+    }
+
+    @Override
+    protected JobCheckpoint checkpoint() {
+        return super.checkpoint().withCreatedCoins(createdCoins);
     }
 
     private Pair<SpendBundle, List<Coin>> getAssetBundle() throws RPCException {
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: getAssetBundle");
+        logAction("getAssetBundle");
         long totalAmount = txItems.stream().mapToLong(i -> i.addition().amount()).sum();
 
-        JsonNode coinReq = new RequestUtils.SpendableCoinBuilder()
-                .setWalletId(config.fundWalletId)
-                .setExcludedCoins(new ArrayList<>(excludedCoins))
-                .build();
-
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: getAssetBundle.getSpendableCoins");
-
-        List<Coin> spendableCoins = walletAPI.getSpendableCoins(coinReq)
-                .data().orElseThrow(dataExcept("WalletAPI.getSpendableCoins"))
-                .confirmedRecords()
-                .stream().filter(c -> !c.spent())
-                .map(CoinRecord::coin)
-                .sorted(Comparator.comparingLong(Coin::amount).reversed())
-                .toList();
-
-        long sumNeeded = totalAmount;
-        List<Coin> txCoins = new ArrayList<>();
-        for (Coin coin : spendableCoins) {
-            if (sumNeeded > 0) {
-                txCoins.add(coin);
-                sumNeeded -= coin.amount();
-            } else { break; }
+        logAction("getAssetBundle.selectCoins");
+
+        // Selection runs over a snapshot of the unreserved coins, if another job reserves one of the selected coins
+        // before they are all reserved, selection is retried against a fresh snapshot
+        WalletCoinIndex fundIndex = getCoinIndex(config.fundWalletId);
+        CoinSelector selector = config.coinSelector;
+        List<Coin> txCoins = null;
+        for (int i = 0; i < COIN_SELECT_ATTEMPTS && txCoins == null; ++i) {
+            List<Coin> candidates = fundIndex.descending(id -> reservations.isReserved(config.fundWalletId, id));
+            candidates.removeIf(excludedCoins::contains);
+            List<Coin> selected = selector.select(
+                    candidates, totalAmount, config.maxCoinInputs, config.coinSelectionBudgetMs
+            );
+            if (selected.isEmpty()) {
+                throw new IllegalStateException("Not enough unreserved coins in wallet: " + config.fundWalletId +
+                        " to cover: " + totalAmount);
+            }
+            if (reservations.reserveAll(config.fundWalletId, selected, jobId, coinLeaseMs())) { txCoins = selected; }
+        }
+        if (txCoins == null) {
+            throw new IllegalStateException("Selected coins in wallet: " + config.fundWalletId +
+                    " were reserved by other jobs on all " + COIN_SELECT_ATTEMPTS + " attempts");
         }
-
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Asset coins selected: " + txCoins.stream().map(ChiaUtils::getCoinId).toList());
 
         List<Addition> finalAdditions = txItems.stream().map(TransactionItem::addition).collect(Collectors.toList());
 
@@ -189,7 +225,8 @@ public class TransactionJob extends TJob implements Callable<Pair<Boolean, List<
         }
 
         parentCoins = txCoins;
-        excludedCoins.addAll(txCoins);
+        tLogger.log(this.getClass(), TLogLevel.DEBUG, () -> "Job: " + jobId +
+                " | Asset coins selected: " + parentCoins.stream().map(ChiaUtils::getCoinId).toList());
 
         JsonNode xchSpendRequest = new RequestUtils.SignedTransactionBuilder()
                 .setWalletId(config.fundWalletId)
@@ -197,8 +234,7 @@ public class TransactionJob extends TJob implements Callable<Pair<Boolean, List<
                 .addCoin(txCoins)
                 .build();
 
-        tLogger.log(this.getClass(), TLogLevel.DEBUG, "Job: " + jobId +
-                " | Action: getAssetBundle.createSignedTransaction");
+        logAction("getAssetBundle.createSignedTransaction");
 
         SignedTransaction signedTransaction = walletAPI.createSignedTransaction(xchSpendRequest)
                 .data().orElseThrow(dataExcept("WalletAPI.createSignedTransaction"));
@@ -207,6 +243,15 @@ public class TransactionJob extends TJob implements Callable<Pair<Boolean, List<
         return new Pair<>(signedTransaction.spendBundle(), txCoins);
     }
 
+    private boolean isChangeTarget(String puzzleHash) {
+        return puzzleHash != null && config.changeTarget != null
+                && strip0x(puzzleHash).equalsIgnoreCase(strip0x(config.changeTarget));
+    }
+
+    private static String strip0x(String hex) {
+        return hex.startsWith("0x") ? hex.substring(2) : hex;
+    }
+
     private List<TransactionItem> getReturn(List<Coin> coins) {
         List<TransactionItem> rtnList = new ArrayList<>(txItems.size());
         for (int i = 0; i < txItems.size(); ++i) {
@@ -2,21 +2,18 @@ package io.mindspice.jxch.transact.service.transaction;
 
 import io.mindspice.jxch.rpc.http.FullNodeAPI;
 import io.mindspice.jxch.rpc.http.WalletAPI;
+import io.mindspice.jxch.transact.service.JobCheckpoint;
 import io.mindspice.jxch.transact.service.TService;
 import io.mindspice.jxch.transact.logging.TLogLevel;
 import io.mindspice.jxch.transact.logging.TLogger;
 import io.mindspice.jxch.transact.settings.JobConfig;
-import io.mindspice.jxch.transact.util.Pair;
+import io.mindspice.jxch.transact.util.TClock;
 
-import java.time.Instant;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.*;
-import java.util.stream.IntStream;
 
 
 public abstract class TransactionService extends TService<TransactionItem> implements Runnable {
-    protected volatile Future<Pair<Boolean, List<TransactionItem>>> currentJob;
 
     public TransactionService(ScheduledExecutorService executor, JobConfig config, TLogger tLogger,
             FullNodeAPI nodeAPI, WalletAPI walletAPI) {
@@ -26,6 +23,8 @@ public abstract class TransactionService extends TService<TransactionItem> imple
     @Override
 
     public void start() {
+        reopen();
+        recoverJournal();
         stopped = false;
         taskRef = executor.scheduleAtFixedRate(
                 this,
@@ -33,35 +32,49 @@ public abstract class TransactionService extends TService<TransactionItem> imple
                 config.queueCheckInterval,
                 TimeUnit.SECONDS
         );
-        lastTime = Instant.now().getEpochSecond();
-    }
-
-    @Override
-    public boolean stopAndBlock() {
-        stopped = true;
-        while (!queue.isEmpty()) {
-            if (currentJob != null) {
-                try {
-                    currentJob.get();  // This will block until the current job is finished
-                    return true;
-                } catch (InterruptedException | ExecutionException e) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        lastTime = TClock.epochSecond();
     }
 
     // Override to handle what to do with failed mints
+    @Override
     protected abstract void onFail(List<TransactionItem> transactionItems);
 
     // Override if you have actions that need performed on finished mints
     // returns the original items, as well as their created coins
+    @Override
     protected abstract void onFinish(List<TransactionItem> txItemsWithCoins);
 
+    @Override
+    protected String itemKey(TransactionItem item) {
+        return item.uuid();
+    }
+
+    @Override
+    protected Class<TransactionItem> itemClass() {
+        return TransactionItem.class;
+    }
+
+    @Override
+    protected void resumeJob(String jobId, List<TransactionItem> txItems, JobCheckpoint checkpoint) {
+        TransactionJob transactionJob = TransactionJob.resume(
+                config, tLogger, nodeAPI, walletAPI, jobId, txItems, checkpoint
+        );
+        transactionJob.setJobSizer(jobSizer);
+        transactionJob.setJournal(journal);
+        transactionJob.setMetrics(metrics);
+        if (config.nonBlockingEngine) {
+            trackJob(transactionJob, transactionJob.callAsync(jobExecutor, executor), txItems);
+        } else {
+            dispatchJob(transactionJob, txItems);
+        }
+    }
+
     @Override
     public void run() {
 
+        // Tops up the fee coin pool in the background whenever it runs low, no-op if the pool is disabled
+        feeCoinPool.maintain();
+
         try {
             if (queue.isEmpty()) {
                 if (stopped) {
@@ -71,29 +84,23 @@ public abstract class TransactionService extends TService<TransactionItem> imple
                 }
             }
 
-            long nowTime = Instant.now().getEpochSecond();
-            if (queue.size() >= config.jobSize || nowTime - lastTime >= config.queueMaxWaitSec) {
+            long nowTime = TClock.epochSecond();
+            // Keep up to maxConcurrentJobs in flight, jobs report back through their future so this never blocks
+            int jobSize = nextJobSize();
+            while (hasJobCapacity() && !queue.isEmpty()
+                    && (queue.size() >= jobSize || nowTime - lastTime >= config.queueMaxWaitSec
+                    || queue.hasDueBefore(dueBefore()))) {
                 lastTime = nowTime;
 
-                List<TransactionItem> transactionItems = IntStream.range(0, Math.min(config.jobSize, queue.size()))
-                        .mapToObj(i -> queue.poll())
-                        .filter(Objects::nonNull).toList();
-
                 TransactionJob transactionJob = new TransactionJob(config, tLogger, nodeAPI, walletAPI);
+                List<TransactionItem> transactionItems = pollJobItems(transactionJob, jobSize);
+                if (transactionItems.isEmpty()) { break; }
                 transactionJob.addTransaction(transactionItems);
-                try {
-                    currentJob = executor.submit(transactionJob);
-                    var txReturn = currentJob.get();
-                    if (txReturn.first()) {
-                        onFinish(txReturn.second());
-                    } else {
-                        onFail(txReturn.second());
-                    }
-                } catch (Exception ex) {
-                    tLogger.log(this.getClass(), TLogLevel.ERROR,
-                            "TransactionJob: " + transactionJob.getJobId() + " Failed" +
-                                    " | Exception: " + ex.getMessage(), ex);
-                    onFail(transactionItems);
+                transactionJob.setJobSizer(jobSizer);
+                if (config.nonBlockingEngine) {
+                    trackJob(transactionJob, transactionJob.callAsync(jobExecutor, executor), transactionItems);
+                } else {
+                    dispatchJob(transactionJob, transactionItems);
                 }
             }
         } catch (Exception e) {
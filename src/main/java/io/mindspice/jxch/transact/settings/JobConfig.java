@@ -1,6 +1,12 @@
 package io.mindspice.jxch.transact.settings;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import io.mindspice.jxch.transact.service.CoinSelector;
+import io.mindspice.jxch.transact.service.CoinSelectors;
+import io.mindspice.jxch.transact.service.FeeStrategies;
+import io.mindspice.jxch.transact.service.FeeStrategy;
+import io.mindspice.jxch.transact.service.PriorityLaneQueue;
 
 import java.io.File;
 import java.io.IOException;
@@ -22,12 +28,53 @@ public class JobConfig {
     public String changeTarget;
     public volatile int maxRetries = 100;
     public volatile int feeIncInterval = 10;
+    public volatile int feeLadderSteps = 0;
+    // Named built in strategy when loaded from yaml, any FeeStrategy can be set in code
+    @JsonDeserialize(as = FeeStrategies.class)
+    public volatile FeeStrategy feeStrategy = FeeStrategies.LEGACY;
+    public volatile double feePercentile = 0.9;
+    public volatile double feeBumpFactor = 1.5;
+    public volatile int feeReplaceWaitSec = 60;
+    public volatile int feeDeadlineSec = 1800;
     public volatile int retryWaitInterval = 45000;
     public volatile int queueMaxWaitSec = 120;
     public volatile int queueCheckInterval;
+    public volatile int deadlineFlushSec = 120;
+    public int maxQueueSize = 0;
+    public volatile PriorityLaneQueue.OverflowPolicy queueOverflowPolicy = PriorityLaneQueue.OverflowPolicy.BLOCK;
+    public volatile long queueOfferTimeoutMs = 5000;
+    public String journalDir = null;
+    public int journalSegmentMb = 64;
+    public boolean jmxMetrics = false;
+    public String jmxMetricsName = null;
+    public volatile int deadlineMinFeePerCost = 5;
     public volatile int maxConfirmWait = -1;
     public volatile int jobSize;
+    public volatile boolean adaptiveJobSize = false;
+    public volatile int adaptiveJobSizeMax = 1000;
+    public volatile long maxBlockCost = 11000000000L;
+    public volatile double targetBlockFraction = 0.5;
+    public volatile int maxConcurrentJobs = 1;
+    public volatile int prepareAhead = 0;
+    public boolean useVirtualThreads = false;
+    public boolean nonBlockingEngine = false;
     public volatile long maxMemPoolCost = 550000000000L;
+    public volatile int mempoolRefreshInterval = 2000;
+    public volatile int peakPollInterval = 2000;
+    public volatile int syncPollInterval = 2000;
+    public volatile int coinLeaseSec = 600;
+    public volatile int coinIndexResyncSec = 120;
+    // Named built in selector when loaded from yaml, any CoinSelector can be set in code
+    @JsonDeserialize(as = CoinSelectors.class)
+    public volatile CoinSelector coinSelector = CoinSelectors.LARGEST_FIRST;
+    public volatile int maxCoinInputs = 100;
+    public volatile int coinSelectionBudgetMs = 50;
+    public volatile int feeCoinPoolSize = 0;
+    public volatile int feeCoinPoolLowWater = 5;
+    public volatile long feeCoinAmount = 0;
+    // Off until the local aggregator is validated against aggregate_spends output, pair with verifyAggregation to do so
+    public volatile boolean localAggregation = false;
+    public volatile boolean verifyAggregation = false;
     public volatile boolean debugSpendbundle = false;
 
 
@@ -0,0 +1,227 @@
+package io.mindspice.jxch.transact.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+
+/*
+ Point on the BLS12-381 G2 curve (y^2 = x^3 + 4(1 + u) over Fp2), the group BLS signatures live in. Only what
+ signature aggregation needs is implemented: the 96 byte compressed encoding used by Chia and addition. Points are
+ affine with coordinates as BigIntegers, aggregating a few signatures is far cheaper than an RPC round trip so no
+ attempt is made at constant time or faster field arithmetic. Decoding checks the point is on the curve, not that it
+ is in the prime order subgroup, the node verifies the signature when the bundle is pushed.
+ */
+public final class G2Element {
+    public static final int SIZE = 96;
+
+    private static final BigInteger P = new BigInteger(
+            "1a0111ea397fe69a4b1ba7b6434bacd764774b84f38512bf6730d2a0f6b0f6241eabfffeb153ffffb9feffffffffaaab", 16);
+    private static final BigInteger P_MINUS_1_HALF = P.subtract(BigInteger.ONE).shiftRight(1);
+    private static final BigInteger SQRT_EXP = P.add(BigInteger.ONE).shiftRight(2);
+    private static final BigInteger TWO_INV = BigInteger.TWO.modInverse(P);
+    private static final Fp2 B = new Fp2(BigInteger.valueOf(4), BigInteger.valueOf(4));
+
+    private static final int FLAG_COMPRESSED = 0x80;
+    private static final int FLAG_INFINITY = 0x40;
+    private static final int FLAG_SIGN = 0x20;
+
+    public static final G2Element INFINITY = new G2Element(null, null);
+    public static final G2Element GENERATOR = new G2Element(
+            new Fp2(
+                    new BigInteger("024aa2b2f08f0a91260805272dc51051c6e47ad4fa403b02b4510b647ae3d1770bac0326a805bbefd" +
+                            "48056c8c121bdb8", 16),
+                    new BigInteger("13e02b6052719f607dacd3a088274f65596bd0d09920b61ab5da61bbdc7f5049334cf11213945d57e" +
+                            "5ac7d055d042b7e", 16)),
+            new Fp2(
+                    new BigInteger("0ce5d527727d6e118cc9cdc6da2e351aadfd9baa8cbdd3a76d429a695160d12c923ac9cc3baca289e" +
+                            "193548608b82801", 16),
+                    new BigInteger("0606c4a02ea734cc32acd2b02bc28b99cb3e287e85a763af267492ab572e99ab3f370d275cec1da1a" +
+                            "aa9075ff05f79be", 16))
+    );
+
+    private final Fp2 x;
+    private final Fp2 y;
+
+
+    // Element of Fp2 = Fp[u] / (u^2 + 1), c0 + c1 * u
+    private record Fp2(BigInteger c0, BigInteger c1) {
+        Fp2 add(Fp2 o) {
+            return new Fp2(c0.add(o.c0).mod(P), c1.add(o.c1).mod(P));
+        }
+
+        Fp2 sub(Fp2 o) {
+            return new Fp2(c0.subtract(o.c0).mod(P), c1.subtract(o.c1).mod(P));
+        }
+
+        Fp2 neg() {
+            return new Fp2(c0.negate().mod(P), c1.negate().mod(P));
+        }
+
+        // Karatsuba, three base field multiplications instead of four
+        Fp2 mul(Fp2 o) {
+            BigInteger v0 = c0.multiply(o.c0);
+            BigInteger v1 = c1.multiply(o.c1);
+            return new Fp2(
+                    v0.subtract(v1).mod(P),
+                    c0.add(c1).multiply(o.c0.add(o.c1)).subtract(v0).subtract(v1).mod(P)
+            );
+        }
+
+        Fp2 mul(long k) {
+            BigInteger bk = BigInteger.valueOf(k);
+            return new Fp2(c0.multiply(bk).mod(P), c1.multiply(bk).mod(P));
+        }
+
+        // (c0 + c1)(c0 - c1) + 2 c0 c1 u
+        Fp2 square() {
+            return new Fp2(c0.add(c1).multiply(c0.subtract(c1)).mod(P), c0.multiply(c1).shiftLeft(1).mod(P));
+        }
+
+        Fp2 inverse() {
+            BigInteger normInv = c0.multiply(c0).add(c1.multiply(c1)).mod(P).modInverse(P);
+            return new Fp2(c0.multiply(normInv).mod(P), c1.negate().multiply(normInv).mod(P));
+        }
+
+        // Square root computed through the norm with base field roots, which BigInteger.modPow makes far cheaper
+        // than exponentiating in Fp2, null if there is none
+        Fp2 sqrt() {
+            if (c1.signum() == 0) {
+                BigInteger root = sqrtFp(c0);
+                if (root != null) { return new Fp2(root, BigInteger.ZERO); }
+                // -1 is not a square in Fp, so a non square c0 has its root on u
+                root = sqrtFp(c0.negate().mod(P));
+                return root != null ? new Fp2(BigInteger.ZERO, root) : null;
+            }
+            BigInteger normRoot = sqrtFp(c0.multiply(c0).add(c1.multiply(c1)).mod(P));
+            if (normRoot == null) { return null; }
+            BigInteger a = sqrtFp(c0.add(normRoot).multiply(TWO_INV).mod(P));
+            if (a == null) { a = sqrtFp(c0.subtract(normRoot).multiply(TWO_INV).mod(P)); }
+            if (a == null || a.signum() == 0) { return null; }
+            Fp2 root = new Fp2(a, c1.multiply(a.shiftLeft(1).modInverse(P)).mod(P));
+            return root.square().equals(this) ? root : null;
+        }
+
+        boolean isZero() {
+            return c0.signum() == 0 && c1.signum() == 0;
+        }
+
+        // The larger of y and -y, as defined by the zcash encoding the sign bit refers to
+        boolean isLexicographicallyLargest() {
+            return c1.signum() != 0 ? c1.compareTo(P_MINUS_1_HALF) > 0 : c0.compareTo(P_MINUS_1_HALF) > 0;
+        }
+    }
+
+    // Square root in Fp for p = 3 mod 4, null if there is none
+    private static BigInteger sqrtFp(BigInteger a) {
+        BigInteger root = a.modPow(SQRT_EXP, P);
+        return root.multiply(root).mod(P).equals(a) ? root : null;
+    }
+
+    private G2Element(Fp2 x, Fp2 y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public static G2Element fromHex(String hex) {
+        return fromBytes(HexFormat.of().parseHex(hex.startsWith("0x") ? hex.substring(2) : hex));
+    }
+
+    // Decodes a compressed point, throws IllegalArgumentException if it is not a valid encoding of a point on the curve
+    public static G2Element fromBytes(byte[] bytes) {
+        if (bytes.length != SIZE) {
+            throw new IllegalArgumentException("G2 element must be " + SIZE + " bytes, got: " + bytes.length);
+        }
+        int flags = bytes[0] & 0xff;
+        if ((flags & FLAG_COMPRESSED) == 0) { throw new IllegalArgumentException("G2 element is not compressed"); }
+
+        byte[] c1Bytes = Arrays.copyOfRange(bytes, 0, SIZE / 2);
+        c1Bytes[0] &= 0x1f;
+        if ((flags & FLAG_INFINITY) != 0) {
+            boolean empty = (flags & FLAG_SIGN) == 0 && new BigInteger(1, c1Bytes).signum() == 0
+                    && new BigInteger(1, Arrays.copyOfRange(bytes, SIZE / 2, SIZE)).signum() == 0;
+            if (!empty) { throw new IllegalArgumentException("Invalid encoding of G2 infinity"); }
+            return INFINITY;
+        }
+
+        BigInteger c1 = new BigInteger(1, c1Bytes);
+        BigInteger c0 = new BigInteger(1, Arrays.copyOfRange(bytes, SIZE / 2, SIZE));
+        if (c0.compareTo(P) >= 0 || c1.compareTo(P) >= 0) {
+            throw new IllegalArgumentException("G2 element coordinate is not a field element");
+        }
+        Fp2 x = new Fp2(c0, c1);
+        Fp2 y = x.square().mul(x).add(B).sqrt();
+        if (y == null) { throw new IllegalArgumentException("G2 element is not on the curve"); }
+        if (y.isLexicographicallyLargest() != ((flags & FLAG_SIGN) != 0)) { y = y.neg(); }
+        return new G2Element(x, y);
+    }
+
+    public boolean isInfinity() {
+        return x == null;
+    }
+
+    public G2Element add(G2Element other) {
+        if (isInfinity()) { return other; }
+        if (other.isInfinity()) { return this; }
+
+        Fp2 lambda;
+        if (x.equals(other.x)) {
+            // P + -P, or doubling a point of order 2 which G2 does not have
+            if (!y.equals(other.y) || y.isZero()) { return INFINITY; }
+            lambda = x.square().mul(3).mul(y.mul(2).inverse());
+        } else {
+            lambda = other.y.sub(y).mul(other.x.sub(x).inverse());
+        }
+        Fp2 x3 = lambda.square().sub(x).sub(other.x);
+        Fp2 y3 = lambda.mul(x.sub(x3)).sub(y);
+        return new G2Element(x3, y3);
+    }
+
+    public G2Element negate() {
+        return isInfinity() ? this : new G2Element(x, y.neg());
+    }
+
+    public boolean isOnCurve() {
+        return isInfinity() || y.square().equals(x.square().mul(x).add(B));
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[SIZE];
+        if (isInfinity()) {
+            bytes[0] = (byte) (FLAG_COMPRESSED | FLAG_INFINITY);
+            return bytes;
+        }
+        writeFixed(x.c1, bytes, 0);
+        writeFixed(x.c0, bytes, SIZE / 2);
+        bytes[0] |= (byte) (FLAG_COMPRESSED | (y.isLexicographicallyLargest() ? FLAG_SIGN : 0));
+        return bytes;
+    }
+
+    // Lowercase hex with a 0x prefix, as signatures appear in RPC json
+    public String toHex() {
+        return "0x" + HexFormat.of().formatHex(toBytes());
+    }
+
+    private static void writeFixed(BigInteger value, byte[] dst, int offset) {
+        byte[] raw = value.toByteArray();
+        int len = Math.min(raw.length, SIZE / 2);
+        System.arraycopy(raw, raw.length - len, dst, offset + SIZE / 2 - len, len);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof G2Element other)) { return false; }
+        return isInfinity() ? other.isInfinity() : !other.isInfinity() && x.equals(other.x) && y.equals(other.y);
+    }
+
+    @Override
+    public int hashCode() {
+        return isInfinity() ? 0 : x.hashCode() * 31 + y.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
@@ -0,0 +1,42 @@
+package io.mindspice.jxch.transact.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+public class JobExecutors {
+    private static final MethodHandle VIRTUAL_EXECUTOR = lookupVirtualExecutor();
+
+    // Executors.newVirtualThreadPerTaskExecutor() only exists on JDK 21+, it is looked up reflectively
+    // so the library can still be built and run on 17
+    private static MethodHandle lookupVirtualExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(
+                    Executors.class,
+                    "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class)
+            );
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    public static boolean virtualThreadsSupported() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    // Returns an executor that starts a new virtual thread per task, or Optional.empty if the running JVM
+    // does not support virtual threads
+    public static Optional<ExecutorService> newVirtualThreadExecutor() {
+        if (VIRTUAL_EXECUTOR == null) { return Optional.empty(); }
+        try {
+            return Optional.of((ExecutorService) VIRTUAL_EXECUTOR.invokeExact());
+        } catch (Throwable t) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.mindspice.jxch.transact.util;
+
+import io.mindspice.jxch.rpc.schemas.object.CoinSpend;
+import io.mindspice.jxch.rpc.schemas.object.SpendBundle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/*
+ In-process equivalent of the wallet's aggregate_spends, which is SpendBundle.aggregate on the node side: coin spends
+ are concatenated in order and the aggregated signatures are summed as G2 points. No keys are needed, the result is
+ only valid if every input bundle was validly signed.
+ */
+public class SpendBundleAggregator {
+
+    // Throws IllegalArgumentException if a bundle's signature is not a valid G2 element
+    public static SpendBundle aggregate(List<SpendBundle> spendBundles) {
+        List<CoinSpend> coinSpends = new ArrayList<>();
+        G2Element signature = G2Element.INFINITY;
+        for (SpendBundle bundle : spendBundles) {
+            coinSpends.addAll(bundle.coinSpends());
+            signature = signature.add(G2Element.fromHex(bundle.aggregatedSignature()));
+        }
+        return new SpendBundle(signature.toHex(), coinSpends);
+    }
+
+    // Same spends in the same order with the same signature, regardless of hex case or prefix
+    public static boolean isEquivalent(SpendBundle a, SpendBundle b) {
+        return a.coinSpends().equals(b.coinSpends())
+                && G2Element.fromHex(a.aggregatedSignature()).equals(G2Element.fromHex(b.aggregatedSignature()));
+    }
+}
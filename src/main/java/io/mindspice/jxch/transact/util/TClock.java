@@ -0,0 +1,61 @@
+package io.mindspice.jxch.transact.util;
+
+import java.util.concurrent.TimeUnit;
+
+
+/*
+ Time source of the framework. Coin leases, refresh intervals, deadlines, confirm waits and metrics all read the time
+ from here, by default the system clock. A simulator can set its own source so the services run on virtual time,
+ it must be set before any service is created and reset once they are stopped.
+ */
+public final class TClock {
+
+    public interface Source {
+        // Epoch millis
+        long millis();
+
+        // Monotonic nanos, only differences are meaningful
+        long nanoTime();
+    }
+
+    public static final Source SYSTEM = new Source() {
+        @Override
+        public long millis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private static volatile Source source = SYSTEM;
+
+
+    private TClock() { }
+
+    public static long millis() {
+        return source.millis();
+    }
+
+    public static long epochSecond() {
+        return TimeUnit.MILLISECONDS.toSeconds(source.millis());
+    }
+
+    public static long nanoTime() {
+        return source.nanoTime();
+    }
+
+    public static Source source() {
+        return source;
+    }
+
+    public static void set(Source clockSource) {
+        source = clockSource;
+    }
+
+    public static void reset() {
+        source = SYSTEM;
+    }
+}